@@ -3,13 +3,30 @@ package app;
 import app.handlers.StaticHandler;
 import app.handlers.ApiAuthHandler;
 import app.handlers.ApiPostsHandler;
+import app.handlers.BoardWebSocketApplication;
+import app.handlers.LogLevelHandler;
+import app.handlers.MetricsHandler;
+import app.handlers.PostStreamHub;
+import app.handlers.RequestDecoder;
+import app.handlers.ResponseCompressor;
 import app.security.JwtService;
 import app.security.RefreshService;
 import app.security.AuthFilter;
+import app.security.ClaimsCache;
+import app.security.PasswordHasher;
+import app.logging.LogControl;
+import app.metrics.MetricsRegistry;
+import app.store.CachedPostRepo;
 import app.store.RedisClient;
+import app.store.Storage;
+import app.store.TimelineChannel;
 import app.store.UserRepo;
 import app.store.PostRepo;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.glassfish.grizzly.http.server.HttpServer;
+import org.glassfish.grizzly.http.server.NetworkListener;
+import org.glassfish.grizzly.websockets.WebSocketAddOn;
+import org.glassfish.grizzly.websockets.WebSocketEngine;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -17,74 +34,141 @@ import java.io.IOException;
 
 public class Main {
     private static final Logger logger = LoggerFactory.getLogger(Main.class);
-    private static final int PORT = 8080;
     
     // 環境変数から設定を取得
+    private static final ServerConfig SERVER_CONFIG = new ServerConfig();
+    private static final int PORT = SERVER_CONFIG.getPort();
+    private static final String STORAGE_BACKEND = System.getenv().getOrDefault("STORAGE_BACKEND", "redis");
     private static final String REDIS_HOST = System.getenv().getOrDefault("REDIS_HOST", "localhost");
     private static final int REDIS_PORT = Integer.parseInt(System.getenv().getOrDefault("REDIS_PORT", "6379"));
+    private static final int REDIS_POOL_SIZE = Integer.parseInt(System.getenv().getOrDefault("REDIS_POOL_SIZE", "20"));
+    // 指定した場合はクラスターに接続する（REDIS_HOST / REDIS_PORT は使わない）
+    private static final String REDIS_CLUSTER_NODES = System.getenv().getOrDefault("REDIS_CLUSTER_NODES", "");
+    private static final int POST_CACHE_SIZE = Integer.parseInt(System.getenv().getOrDefault("POST_CACHE_SIZE", "200"));
     
+    private static Storage storage;
     private static RedisClient redisClient;
+    private static TimelineChannel timelineChannel;
+    private static PostStreamHub postStreamHub;
+    private static BoardWebSocketApplication boardWebSocket;
     private static JwtService jwtService;
     private static RefreshService refreshService;
     private static UserRepo userRepo;
+    private static PasswordHasher passwordHasher;
+    private static ResponseCompressor responseCompressor;
     private static PostRepo postRepo;
+    private static MetricsRegistry metrics;
+    private static LogControl logControl;
     
     public static void main(String[] args) throws IOException {
         logger.info("Starting Mini Bulletin Board Application with JWT Authentication");
-        logger.info("Configuration - Port: {}, Redis Host: {}, Redis Port: {}", PORT, REDIS_HOST, REDIS_PORT);
+        logger.info("Configuration - Port: {}, Storage: {}, Redis Host: {}, Redis Port: {}", PORT, STORAGE_BACKEND, REDIS_HOST, REDIS_PORT);
         
         try {
-            // Redis接続を初期化
-            logger.debug("Initializing Redis connection to {}:{}", REDIS_HOST, REDIS_PORT);
-            redisClient = new RedisClient(REDIS_HOST, REDIS_PORT);
-            logger.info("Redis connection initialized successfully");
+            // 保存先を初期化
+            storage = createStorage();
             
             // サービスとリポジトリを初期化
             jwtService = new JwtService();
-            userRepo = new UserRepo(redisClient.getJedisPool());
-            postRepo = new PostRepo(redisClient.getJedisPool());
-            refreshService = new RefreshService(jwtService, userRepo, redisClient.getJedisPool());
+            passwordHasher = new PasswordHasher();
+            responseCompressor = new ResponseCompressor();
+            // JSONの読み書きはAPIハンドラー間で1つの ObjectMapper を共有する
+            ObjectMapper objectMapper = new ObjectMapper();
+            RequestDecoder requestDecoder = new RequestDecoder(objectMapper);
+            metrics = new MetricsRegistry();
+            logControl = new LogControl();
+            userRepo = storage.getUserRepo();
+            userRepo.migrateEmailIndex();
+            timelineChannel = storage.getTimelineChannel();
+            postRepo = storage.getPostRepo();
+            postStreamHub = new PostStreamHub(timelineChannel);
+            timelineChannel.start();
+            refreshService = new RefreshService(jwtService, userRepo, storage.getRefreshTokenRepo());
             
             logger.info("Services and repositories initialized successfully");
             
             // HTTPサーバーを作成
             logger.debug("Creating HTTP server on port {}", PORT);
-            HttpServer server = HttpServer.createSimpleServer(null, PORT);
+            HttpServer server = SERVER_CONFIG.createServer();
             
             // 静的ファイルハンドラーを設定
             logger.debug("Setting up static file handler for web resources");
-            server.getServerConfiguration().addHttpHandler(new StaticHandler("src/main/resources/web/"), "/");
+            server.getServerConfiguration().addHttpHandler(metrics.instrument("/", new StaticHandler("src/main/resources/web/")), "/");
             
             // 認証APIエンドポイントを設定
             logger.debug("Setting up auth API handler");
-            server.getServerConfiguration().addHttpHandler(new ApiAuthHandler(jwtService, refreshService, userRepo), "/api/auth");
+            server.getServerConfiguration().addHttpHandler(metrics.instrument("/api/auth",
+                new ApiAuthHandler(jwtService, refreshService, userRepo, passwordHasher, requestDecoder)), "/api/auth");
             
             // 投稿APIエンドポイントを設定（認証フィルター付き）
+            // "/api/posts" だけでは完全一致になり、/api/posts/stream や /api/posts/{id} が /api/auth 側に回される
             logger.debug("Setting up posts API handler with auth filter");
-            ApiPostsHandler postsHandler = new ApiPostsHandler(postRepo);
+            ApiPostsHandler postsHandler = new ApiPostsHandler(postRepo, postStreamHub, responseCompressor, requestDecoder, objectMapper);
             AuthFilter authFilter = new AuthFilter(jwtService, postsHandler);
-            server.getServerConfiguration().addHttpHandler(authFilter, "/api/posts");
+            server.getServerConfiguration().addHttpHandler(metrics.instrument("/api/posts", authFilter), "/api/posts", "/api/posts/*");
+            
+            // WebSocketエンドポイントを設定（認証は接続後の auth メッセージで行う）
+            logger.debug("Setting up board WebSocket endpoint");
+            for (NetworkListener listener : server.getListeners()) {
+                listener.registerAddOn(new WebSocketAddOn());
+            }
+            boardWebSocket = new BoardWebSocketApplication(jwtService, postRepo, timelineChannel);
+            WebSocketEngine.getEngine().register("", "/ws/board", boardWebSocket);
+            
+            // メトリクスエンドポイントを設定（admin のみ）
+            logger.debug("Setting up metrics endpoint");
+            registerMetrics();
+            MetricsHandler metricsHandler = new MetricsHandler(metrics, responseCompressor);
+            server.getServerConfiguration().addHttpHandler(metrics.instrument("/metrics", new AuthFilter(jwtService, metricsHandler)), "/metrics");
+            
+            // ログレベル変更エンドポイントを設定（admin のみ）
+            logger.debug("Setting up log level endpoint");
+            LogLevelHandler logLevelHandler = new LogLevelHandler(logControl, requestDecoder, objectMapper);
+            server.getServerConfiguration().addHttpHandler(metrics.instrument("/admin/loggers", new AuthFilter(jwtService, logLevelHandler)), "/admin/loggers");
             
             // サーバーを開始
             server.start();
+            SERVER_CONFIG.logEffectiveSettings(server);
             logger.info("Server started successfully on http://localhost:{}", PORT);
             logger.info("Available endpoints:");
             logger.info("  - Static files: http://localhost:{}/", PORT);
             logger.info("  - Auth API: http://localhost:{}/api/auth/*", PORT);
             logger.info("  - Posts API: http://localhost:{}/api/posts/*", PORT);
+            logger.info("  - Posts stream (SSE): http://localhost:{}/api/posts/stream", PORT);
+            logger.info("  - Board WebSocket: ws://localhost:{}/ws/board", PORT);
+            logger.info("  - Metrics (admin): http://localhost:{}/metrics", PORT);
+            logger.info("  - Log levels (admin): http://localhost:{}/admin/loggers", PORT);
             
             // シャットダウンフックを追加
             Runtime.getRuntime().addShutdownHook(new Thread(() -> {
                 logger.info("Shutdown signal received, stopping server...");
+                ClaimsCache claimsCache = jwtService.getAccessCache();
+                logger.info("Access token cache: {} hits, {} misses (hit rate {})", claimsCache.getHits(), claimsCache.getMisses(),
+                    String.format("%.1f%%", claimsCache.getHitRate() * 100));
+                logger.info("Response compression: {} responses, {} bytes saved, {} ms CPU", responseCompressor.getCompressedResponses(),
+                    responseCompressor.getBytesSaved(), responseCompressor.getCpuNanos() / 1_000_000);
                 try {
+                    if (postStreamHub != null) {
+                        postStreamHub.close();
+                    }
+                    if (boardWebSocket != null) {
+                        WebSocketEngine.getEngine().unregister(boardWebSocket);
+                        boardWebSocket.close();
+                    }
                     server.shutdownNow();
-                    if (redisClient != null) {
-                        redisClient.close();
+                    SERVER_CONFIG.close();
+                    if (passwordHasher != null) {
+                        passwordHasher.close();
+                    }
+                    if (storage != null) {
+                        storage.close();
                     }
                     logger.info("Server stopped successfully");
                 } catch (Exception e) {
                     logger.error("Error during shutdown", e);
                 }
+                // 非同期アペンダーのキューに残ったログを書き出す
+                logControl.stop();
             }));
             
             // サーバーが停止するまで待機
@@ -99,4 +183,63 @@ public class Main {
             throw e;
         }
     }
+    
+    // 各コンポーネントが持つ統計値をメトリクスとして公開する（値は出力時に読み出す）
+    private static void registerMetrics() {
+        ClaimsCache claimsCache = jwtService.getAccessCache();
+        metrics.counter("jwt_claims_cache_hits_total", "Access token verifications served from cache", claimsCache::getHits);
+        metrics.counter("jwt_claims_cache_misses_total", "Access token verifications not found in cache", claimsCache::getMisses);
+        metrics.gauge("jwt_claims_cache_size", "Cached access token claims", claimsCache::size);
+        
+        metrics.counter("response_compression_compressed_total", "API responses sent compressed", responseCompressor::getCompressedResponses);
+        metrics.counter("response_compression_uncompressed_total", "API responses sent uncompressed", responseCompressor::getUncompressedResponses);
+        metrics.counter("response_compression_bytes_in_total", "Response bytes before compression", responseCompressor::getBytesIn);
+        metrics.counter("response_compression_bytes_out_total", "Response bytes after compression", responseCompressor::getBytesOut);
+        metrics.counter("response_compression_cpu_seconds_total", "CPU time spent compressing responses",
+            () -> responseCompressor.getCpuNanos() / 1e9);
+        
+        if (postRepo instanceof CachedPostRepo) {
+            CachedPostRepo cachedPostRepo = (CachedPostRepo) postRepo;
+            metrics.counter("post_cache_hits_total", "Timeline pages served from the node cache", cachedPostRepo::getHits);
+            metrics.counter("post_cache_misses_total", "Timeline pages read from Redis", cachedPostRepo::getMisses);
+        }
+        
+        metrics.counter("log_events_suppressed_total", "Log events dropped by the per-logger rate limit", logControl::getSuppressedEvents);
+        metrics.gauge("log_async_queue_events", "Log events waiting in async appender queues", logControl::getQueuedEvents);
+        
+        metrics.gauge("password_hash_queue_size", "Password hashing tasks waiting for a thread", passwordHasher::getQueueSize);
+        metrics.gauge("sse_clients", "Connected SSE clients", postStreamHub::getClientCount);
+        metrics.gauge("websocket_connections", "Open board WebSocket connections", boardWebSocket::getConnectionCount);
+        
+        if (redisClient != null) {
+            metrics.gauge("redis_pool_active_connections", "Redis connections borrowed from the pool", redisClient::getNumActive);
+            metrics.gauge("redis_pool_idle_connections", "Idle Redis connections in the pool", redisClient::getNumIdle);
+            metrics.gauge("redis_pool_waiters", "Threads waiting for a Redis connection", redisClient::getNumWaiters);
+            metrics.gauge("redis_pool_max_connections", "Maximum Redis connections in the pool", redisClient::getMaxTotal);
+            metrics.gauge("redis_pool_saturation", "Borrowed Redis connections as a fraction of the pool maximum", redisClient::getSaturation);
+            metrics.counter("redis_pool_borrow_timeouts_total", "Redis connection borrows that gave up after the max wait",
+                redisClient::getBorrowTimeouts);
+            metrics.histogram("redis_pool_borrow_wait_seconds", "Time spent borrowing a Redis connection", redisClient.getBorrowWaits());
+        }
+    }
+    
+    private static Storage createStorage() {
+        switch (STORAGE_BACKEND) {
+            case "redis":
+                if (!REDIS_CLUSTER_NODES.isBlank()) {
+                    logger.debug("Initializing Redis cluster connection to {}", REDIS_CLUSTER_NODES);
+                    redisClient = RedisClient.cluster(REDIS_CLUSTER_NODES, REDIS_POOL_SIZE);
+                } else {
+                    logger.debug("Initializing Redis connection to {}:{}", REDIS_HOST, REDIS_PORT);
+                    redisClient = new RedisClient(REDIS_HOST, REDIS_PORT, REDIS_POOL_SIZE);
+                }
+                logger.info("Redis connection initialized successfully");
+                return Storage.redis(redisClient, POST_CACHE_SIZE);
+            case "memory":
+                logger.warn("Using in-memory storage: data is not shared between nodes and is lost on shutdown");
+                return Storage.memory();
+            default:
+                throw new IllegalArgumentException("Unknown STORAGE_BACKEND: " + STORAGE_BACKEND + " (expected redis or memory)");
+        }
+    }
 }
@@ -0,0 +1,137 @@
+package app;
+
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.glassfish.grizzly.http.server.NetworkListener;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransport;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransportBuilder;
+import org.glassfish.grizzly.threadpool.ThreadPoolConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// HTTPサーバーの設定（環境変数から取得。未設定の項目はGrizzlyの既定値を使う）
+public class ServerConfig {
+    private static final Logger logger = LoggerFactory.getLogger(ServerConfig.class);
+    
+    private static final String LISTENER_NAME = "grizzly";
+    
+    private final String host;
+    private final int port;
+    private final int selectorThreads;
+    private final int workerThreads;
+    // true の場合、リクエスト処理（HttpHandler.service）を仮想スレッドで実行する（Java 21以降）
+    private final boolean virtualThreads;
+    private final int keepAliveTimeoutSec;
+    private final int keepAliveMaxRequests;
+    private final boolean tcpNoDelay;
+    private final int readBufferSize;
+    private final int writeBufferSize;
+    private final int maxHeaderSize;
+    
+    private ExecutorService virtualWorkers;
+    
+    public ServerConfig() {
+        this.host = System.getenv().getOrDefault("SERVER_HOST", "0.0.0.0");
+        this.port = Integer.parseInt(System.getenv().getOrDefault("SERVER_PORT", "8080"));
+        this.selectorThreads = Integer.parseInt(System.getenv().getOrDefault("SERVER_SELECTOR_THREADS", "-1"));
+        this.workerThreads = Integer.parseInt(System.getenv().getOrDefault("SERVER_WORKER_THREADS", "-1"));
+        this.virtualThreads = Boolean.parseBoolean(System.getenv().getOrDefault("VIRTUAL_THREADS", "false"));
+        this.keepAliveTimeoutSec = Integer.parseInt(System.getenv().getOrDefault("SERVER_KEEPALIVE_TIMEOUT_SEC", "30"));
+        this.keepAliveMaxRequests = Integer.parseInt(System.getenv().getOrDefault("SERVER_KEEPALIVE_MAX_REQUESTS", "256"));
+        this.tcpNoDelay = Boolean.parseBoolean(System.getenv().getOrDefault("SERVER_TCP_NODELAY", "true"));
+        this.readBufferSize = Integer.parseInt(System.getenv().getOrDefault("SERVER_READ_BUFFER_SIZE", "-1"));
+        this.writeBufferSize = Integer.parseInt(System.getenv().getOrDefault("SERVER_WRITE_BUFFER_SIZE", "-1"));
+        this.maxHeaderSize = Integer.parseInt(System.getenv().getOrDefault("SERVER_MAX_HEADER_SIZE", "-1"));
+    }
+    
+    public HttpServer createServer() {
+        TCPNIOTransportBuilder builder = TCPNIOTransportBuilder.newInstance()
+                .setTcpNoDelay(tcpNoDelay);
+        if (selectorThreads > 0) {
+            builder.setSelectorRunnersCount(selectorThreads);
+        }
+        if (workerThreads > 0) {
+            builder.setWorkerThreadPoolConfig(ThreadPoolConfig.defaultConfig()
+                    .setPoolName("grizzly-http-worker")
+                    .setCorePoolSize(workerThreads)
+                    .setMaxPoolSize(workerThreads));
+        }
+        if (readBufferSize > 0) {
+            builder.setReadBufferSize(readBufferSize);
+        }
+        if (writeBufferSize > 0) {
+            builder.setWriteBufferSize(writeBufferSize);
+        }
+        TCPNIOTransport transport = builder.build();
+        
+        if (virtualThreads) {
+            virtualWorkers = newVirtualThreadExecutor();
+            if (virtualWorkers != null) {
+                transport.setWorkerThreadPool(virtualWorkers);
+            }
+        }
+        
+        NetworkListener listener = new NetworkListener(LISTENER_NAME, host, port);
+        listener.setTransport(transport);
+        listener.getKeepAlive().setIdleTimeoutInSeconds(keepAliveTimeoutSec);
+        listener.getKeepAlive().setMaxRequestsCount(keepAliveMaxRequests);
+        if (maxHeaderSize > 0) {
+            listener.setMaxHttpHeaderSize(maxHeaderSize);
+        }
+        
+        HttpServer server = new HttpServer();
+        server.addListener(listener);
+        return server;
+    }
+    
+    // server.start() 後に呼ぶ（既定値を含めて実際に使われている値を出力する）
+    public void logEffectiveSettings(HttpServer server) {
+        NetworkListener listener = server.getListener(LISTENER_NAME);
+        TCPNIOTransport transport = listener.getTransport();
+        
+        String workers;
+        if (virtualWorkers != null) {
+            workers = "virtual threads";
+        } else if (transport.getWorkerThreadPoolConfig() != null) {
+            workers = String.valueOf(transport.getWorkerThreadPoolConfig().getMaxPoolSize());
+        } else {
+            workers = "none";
+        }
+        
+        logger.info("Server settings - listen: {}:{}, selector threads: {}, worker threads: {}",
+            listener.getHost(), listener.getPort(), transport.getSelectorRunnersCount(), workers);
+        logger.info("Server settings - keep-alive timeout: {}s, keep-alive max requests: {}, TCP_NODELAY: {}",
+            listener.getKeepAlive().getIdleTimeoutInSeconds(), listener.getKeepAlive().getMaxRequestsCount(), transport.isTcpNoDelay());
+        logger.info("Server settings - read buffer: {}, write buffer: {}, max header size: {}",
+            sizeOrDefault(transport.getReadBufferSize()), sizeOrDefault(transport.getWriteBufferSize()),
+            sizeOrDefault(listener.getMaxHttpHeaderSize()));
+    }
+    
+    public int getPort() {
+        return port;
+    }
+    
+    public void close() {
+        if (virtualWorkers != null) {
+            virtualWorkers.shutdownNow();
+        }
+    }
+    
+    // 未設定（-1）の場合はGrizzly/OSの既定値が使われる
+    private static String sizeOrDefault(int size) {
+        return size > 0 ? size + " bytes" : "default";
+    }
+    
+    // コンパイルターゲットは17のままにするため、仮想スレッドのAPIはリフレクションで取得する
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            logger.warn("Virtual threads are not available on Java {}, using platform worker threads",
+                System.getProperty("java.version"));
+            return null;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package app.handlers;
 
 import app.security.JwtService;
+import app.security.PasswordHasher;
 import app.security.RefreshService;
 import app.store.User;
 import app.store.UserRepo;
@@ -9,18 +10,15 @@ import org.glassfish.grizzly.http.server.Request;
 import org.glassfish.grizzly.http.server.Response;
 import org.glassfish.grizzly.http.Method;
 import org.glassfish.grizzly.http.util.HttpStatus;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.util.Map;
 import java.util.UUID;
 import java.util.Set;
-import org.mindrot.jbcrypt.BCrypt;
-import redis.clients.jedis.Jedis;
-import redis.clients.jedis.JedisPool;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
 
 public class ApiAuthHandler extends HttpHandler {
     private static final Logger logger = LoggerFactory.getLogger(ApiAuthHandler.class);
@@ -28,13 +26,16 @@ public class ApiAuthHandler extends HttpHandler {
     private final JwtService jwtService;
     private final RefreshService refreshService;
     private final UserRepo userRepo;
-    private final ObjectMapper objectMapper;
+    private final PasswordHasher passwordHasher;
+    private final RequestDecoder requestDecoder;
     
-    public ApiAuthHandler(JwtService jwtService, RefreshService refreshService, UserRepo userRepo) {
+    public ApiAuthHandler(JwtService jwtService, RefreshService refreshService, UserRepo userRepo, PasswordHasher passwordHasher,
+            RequestDecoder requestDecoder) {
         this.jwtService = jwtService;
         this.refreshService = refreshService;
         this.userRepo = userRepo;
-        this.objectMapper = new ObjectMapper();
+        this.passwordHasher = passwordHasher;
+        this.requestDecoder = requestDecoder;
     }
     
     @Override
@@ -87,6 +88,11 @@ public class ApiAuthHandler extends HttpHandler {
                 response.setStatus(HttpStatus.NOT_FOUND_404);
             }
         } catch (Exception e) {
+            if (LoadShedding.isOverloaded(e)) {
+                logger.warn("Storage unavailable, rejecting auth request: {} {} - {}", method, path, e.getMessage());
+                LoadShedding.sendBusy(response);
+                return;
+            }
             logger.error("Error handling auth request: {} {}", method, path, e);
             response.setStatus(HttpStatus.INTERNAL_SERVER_ERROR_500);
             response.setContentType("application/json; charset=UTF-8");
@@ -97,10 +103,16 @@ public class ApiAuthHandler extends HttpHandler {
     private void handleSignup(Request request, Response response) throws Exception {
         logger.debug("Handling signup request");
         
-        Map<String, Object> body = parseJsonBody(request);
-        String username = (String) body.get("username");
-        String email = (String) body.get("email");
-        String password = (String) body.get("password");
+        RequestDecoder.SignupRequest body;
+        try {
+            body = requestDecoder.readSignup(request);
+        } catch (RequestDecoder.InvalidBodyException e) {
+            requestDecoder.sendError(response, e);
+            return;
+        }
+        String username = body.getUsername();
+        String email = body.getEmail();
+        String password = body.getPassword();
         
         if (username == null || email == null || password == null) {
             logger.warn("Signup request missing required fields");
@@ -110,8 +122,11 @@ public class ApiAuthHandler extends HttpHandler {
             return;
         }
         
-        // ユーザー名とメールアドレスの重複チェック
-        if (userRepo.existsByUsername(username)) {
+        // ユーザー名とメールアドレスを同時に予約する（重複チェックと登録の間の競合を防ぐ）
+        String userId = UUID.randomUUID().toString();
+        UserRepo.Reservation reservation = userRepo.reserve(username, email, userId);
+        
+        if (reservation == UserRepo.Reservation.USERNAME_TAKEN) {
             logger.warn("Signup failed: username already exists: {}", username);
             response.setStatus(HttpStatus.CONFLICT_409);
             response.setContentType("application/json; charset=UTF-8");
@@ -119,7 +134,7 @@ public class ApiAuthHandler extends HttpHandler {
             return;
         }
         
-        if (userRepo.existsByEmail(email)) {
+        if (reservation == UserRepo.Reservation.EMAIL_TAKEN) {
             logger.warn("Signup failed: email already exists: {}", email);
             response.setStatus(HttpStatus.CONFLICT_409);
             response.setContentType("application/json; charset=UTF-8");
@@ -127,25 +142,30 @@ public class ApiAuthHandler extends HttpHandler {
             return;
         }
         
-        // パスワードをハッシュ化
-        String passHash = BCrypt.hashpw(password, BCrypt.gensalt());
-        
-        // ユーザーを作成
-        User user = new User(UUID.randomUUID().toString(), username, email, passHash);
-        userRepo.save(user);
-        
-        logger.info("User created successfully: {}", username);
-        response.setStatus(HttpStatus.CREATED_201);
-        response.setContentType("application/json; charset=UTF-8");
-        response.getWriter().write("{\"message\": \"User created successfully\"}");
+        // パスワードをハッシュ化してからユーザーを作成（失敗時は予約を解放）
+        runHashing(response, () -> passwordHasher.hash(password), passHash -> {
+            User user = new User(userId, username, email, passHash);
+            userRepo.save(user);
+            
+            logger.info("User created successfully: {}", username);
+            response.setStatus(HttpStatus.CREATED_201);
+            response.setContentType("application/json; charset=UTF-8");
+            response.getWriter().write("{\"message\": \"User created successfully\"}");
+        }, () -> userRepo.release(username, email, userId));
     }
     
     private void handleSignin(Request request, Response response) throws Exception {
         logger.debug("Handling signin request");
         
-        Map<String, Object> body = parseJsonBody(request);
-        String username = (String) body.get("username");
-        String password = (String) body.get("password");
+        RequestDecoder.SigninRequest body;
+        try {
+            body = requestDecoder.readSignin(request);
+        } catch (RequestDecoder.InvalidBodyException e) {
+            requestDecoder.sendError(response, e);
+            return;
+        }
+        String username = body.getUsername();
+        String password = body.getPassword();
         
         if (username == null || password == null) {
             logger.warn("Signin request missing required fields");
@@ -166,24 +186,44 @@ public class ApiAuthHandler extends HttpHandler {
         }
         
         // パスワードを検証
-        if (!BCrypt.checkpw(password, user.getPassHash())) {
-            logger.warn("Signin failed: invalid password for user: {}", username);
-            response.setStatus(HttpStatus.UNAUTHORIZED_401);
-            response.setContentType("application/json; charset=UTF-8");
-            response.getWriter().write("{\"error\": \"Invalid credentials\"}");
-            return;
+        runHashing(response, () -> passwordHasher.verify(password, user.getPassHash()), valid -> {
+            if (!valid) {
+                logger.warn("Signin failed: invalid password for user: {}", username);
+                response.setStatus(HttpStatus.UNAUTHORIZED_401);
+                response.setContentType("application/json; charset=UTF-8");
+                response.getWriter().write("{\"error\": \"Invalid credentials\"}");
+                return;
+            }
+            
+            completeSignin(user, password, response);
+        }, null);
+    }
+    
+    private void completeSignin(User user, String password, Response response) throws Exception {
+        // コスト設定が変わっていればハッシュを作り直す（混雑時は次回のログインに回す）
+        if (passwordHasher.needsRehash(user.getPassHash())) {
+            try {
+                passwordHasher.hash(password).thenAccept(passHash -> {
+                    userRepo.updatePassHash(user.getId(), passHash);
+                    logger.info("Password rehashed with new cost for user: {}", user.getUsername());
+                }).whenComplete((ignored, error) -> {
+                    // 失敗しても古いハッシュのままログインできるので、次回のログインで作り直す
+                    if (error != null) {
+                        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                        logger.warn("Failed to rehash password for user: {} - {}", user.getUsername(), cause.toString());
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                logger.debug("Skipping password rehash, hashing queue is full");
+            }
         }
         
         // トークンを発行
         String accessToken = jwtService.issueAccess(user);
         String refreshToken = jwtService.issueRefresh(user);
         
-        // リフレッシュトークンをRedisに登録
-        try (Jedis jedis = refreshService.getJedisPool().getResource()) {
-            String jti = jwtService.verifyRefresh(refreshToken).getId();
-            String activeKey = "rt:active:" + jti;
-            jedis.setex(activeKey, jwtService.getRefreshTokenTtlSec(), user.getId());
-        }
+        // リフレッシュトークンを登録
+        refreshService.activateRefreshToken(refreshToken, user.getId());
         
         // アクセストークンをレスポンスボディに、リフレッシュトークンをCookieに設定
         response.setContentType("application/json; charset=UTF-8");
@@ -194,7 +234,67 @@ public class ApiAuthHandler extends HttpHandler {
         String responseBody = "{\"accessToken\": \"" + accessToken + "\"}";
         response.getWriter().write(responseBody);
         
-        logger.info("User signed in successfully: {}", username);
+        logger.info("User signed in successfully: {}", user.getUsername());
+    }
+    
+    // ハッシュ計算中はレスポンスを保留してワーカースレッドを解放し、完了後に next で応答する
+    private <T> void runHashing(Response response, Supplier<CompletableFuture<T>> task, HashingStep<T> next, Runnable onFailure) {
+        response.suspend();
+        
+        CompletableFuture<T> future;
+        try {
+            future = task.get();
+        } catch (RejectedExecutionException e) {
+            logger.warn("Password hashing queue is full, rejecting request");
+            if (onFailure != null) {
+                onFailure.run();
+            }
+            try {
+                LoadShedding.sendBusy(response);
+            } catch (Exception writeError) {
+                logger.debug("Failed to write 503 response: {}", writeError.getMessage());
+            } finally {
+                response.resume();
+            }
+            return;
+        }
+        
+        future.whenComplete((result, error) -> {
+            try {
+                if (error != null) {
+                    throw error;
+                }
+                next.accept(result);
+            } catch (Throwable e) {
+                boolean overloaded = LoadShedding.isOverloaded(e);
+                if (overloaded) {
+                    logger.warn("Storage unavailable, rejecting auth request - {}", e.getMessage());
+                } else {
+                    logger.error("Error completing auth request", e);
+                }
+                if (onFailure != null) {
+                    onFailure.run();
+                }
+                try {
+                    if (overloaded) {
+                        LoadShedding.sendBusy(response);
+                    } else {
+                        response.setStatus(HttpStatus.INTERNAL_SERVER_ERROR_500);
+                        response.setContentType("application/json; charset=UTF-8");
+                        response.getWriter().write("{\"error\": \"Internal server error\"}");
+                    }
+                } catch (Exception writeError) {
+                    logger.debug("Failed to write error response: {}", writeError.getMessage());
+                }
+            } finally {
+                response.resume();
+            }
+        });
+    }
+    
+    @FunctionalInterface
+    private interface HashingStep<T> {
+        void accept(T result) throws Exception;
     }
     
     private void handleRefresh(Request request, Response response) throws Exception {
@@ -238,6 +338,12 @@ public class ApiAuthHandler extends HttpHandler {
             
             logger.info("Token refreshed successfully");
         } catch (Exception e) {
+            // ストレージが使えないだけの場合は、クライアントにログアウトさせず再試行させる
+            if (LoadShedding.isOverloaded(e)) {
+                logger.warn("Storage unavailable, rejecting refresh request - {}", e.getMessage());
+                LoadShedding.sendBusy(response);
+                return;
+            }
             logger.warn("Refresh failed: {}", e.getMessage());
             response.setStatus(HttpStatus.UNAUTHORIZED_401);
             response.setContentType("application/json; charset=UTF-8");
@@ -285,21 +391,4 @@ public class ApiAuthHandler extends HttpHandler {
         
         logger.info("User signed out successfully");
     }
-    
-    private Map<String, Object> parseJsonBody(Request request) throws Exception {
-        StringBuilder jsonBuilder = new StringBuilder();
-        BufferedReader reader = new BufferedReader(
-            new InputStreamReader(request.getInputStream(), "UTF-8"));
-        String line;
-        while ((line = reader.readLine()) != null) {
-            jsonBuilder.append(line);
-        }
-        
-        String jsonBody = jsonBuilder.toString();
-        logger.debug("JSON body: {}", jsonBody);
-        
-        @SuppressWarnings("unchecked")
-        Map<String, Object> jsonMap = objectMapper.readValue(jsonBody, Map.class);
-        return jsonMap;
-    }
 }
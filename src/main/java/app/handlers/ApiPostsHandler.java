@@ -1,31 +1,45 @@
 package app.handlers;
 
+import app.metrics.RequestTiming;
 import app.store.Post;
+import app.store.PostPage;
 import app.store.PostRepo;
 import org.glassfish.grizzly.http.server.HttpHandler;
 import org.glassfish.grizzly.http.server.Request;
 import org.glassfish.grizzly.http.server.Response;
 import org.glassfish.grizzly.http.Method;
 import org.glassfish.grizzly.http.util.HttpStatus;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.util.Map;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.UUID;
-import java.util.Set;
+import java.util.Collection;
 
 public class ApiPostsHandler extends HttpHandler {
     private static final Logger logger = LoggerFactory.getLogger(ApiPostsHandler.class);
     
+    // ページサイズ（?limit= で指定、上限あり）
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 100;
+    
     private final PostRepo postRepo;
+    private final PostStreamHub streamHub;
+    private final ResponseCompressor compressor;
+    private final RequestDecoder requestDecoder;
     private final ObjectMapper objectMapper;
     
-    public ApiPostsHandler(PostRepo postRepo) {
+    public ApiPostsHandler(PostRepo postRepo, PostStreamHub streamHub, ResponseCompressor compressor, RequestDecoder requestDecoder,
+            ObjectMapper objectMapper) {
         this.postRepo = postRepo;
-        this.objectMapper = new ObjectMapper();
+        this.streamHub = streamHub;
+        this.compressor = compressor;
+        this.requestDecoder = requestDecoder;
+        this.objectMapper = objectMapper;
     }
     
     @Override
@@ -41,7 +55,7 @@ public class ApiPostsHandler extends HttpHandler {
         // CORSヘッダーを設定
         response.setHeader("Access-Control-Allow-Origin", "*");
         response.setHeader("Access-Control-Allow-Methods", "GET, POST, DELETE, OPTIONS");
-        response.setHeader("Access-Control-Allow-Headers", "Content-Type, Authorization");
+        response.setHeader("Access-Control-Allow-Headers", "Content-Type, Authorization, If-None-Match");
         response.setHeader("Access-Control-Allow-Credentials", "true");
         
         if (method == Method.OPTIONS) {
@@ -58,6 +72,13 @@ public class ApiPostsHandler extends HttpHandler {
                 } else {
                     response.setStatus(HttpStatus.METHOD_NOT_ALLOWED_405);
                 }
+            } else if (path.equals("/api/posts/stream")) {
+                if (method == Method.GET) {
+                    logger.debug("Handling GET /api/posts/stream request");
+                    streamHub.subscribe(request, response);
+                } else {
+                    response.setStatus(HttpStatus.METHOD_NOT_ALLOWED_405);
+                }
             } else if (path.startsWith("/api/posts/")) {
                 if (method == Method.DELETE) {
                     String id = path.substring("/api/posts/".length());
@@ -69,6 +90,11 @@ public class ApiPostsHandler extends HttpHandler {
                 response.setStatus(HttpStatus.NOT_FOUND_404);
             }
         } catch (Exception e) {
+            if (LoadShedding.isOverloaded(e)) {
+                logger.warn("Storage unavailable, rejecting posts request: {} {} - {}", method, path, e.getMessage());
+                LoadShedding.sendBusy(response);
+                return;
+            }
             logger.error("Error handling posts request: {} {}", method, path, e);
             response.setStatus(HttpStatus.INTERNAL_SERVER_ERROR_500);
             response.setContentType("application/json; charset=UTF-8");
@@ -79,12 +105,99 @@ public class ApiPostsHandler extends HttpHandler {
     private void handleGetPosts(Request request, Response response) throws Exception {
         logger.debug("Handling GET /api/posts request");
         
-        var posts = postRepo.findAll();
-        String json = objectMapper.writeValueAsString(posts);
+        int limit = DEFAULT_PAGE_SIZE;
+        String limitParam = request.getParameter("limit");
+        if (limitParam != null) {
+            try {
+                limit = Math.max(1, Math.min(MAX_PAGE_SIZE, Integer.parseInt(limitParam)));
+            } catch (NumberFormatException e) {
+                response.setStatus(HttpStatus.BAD_REQUEST_400);
+                response.setContentType("application/json; charset=UTF-8");
+                response.getWriter().write("{\"error\": \"Invalid limit\"}");
+                return;
+            }
+        }
+        
+        // 不正なパラメーターは304の判定や本文の書き出しより前に400で返す
+        String before = request.getParameter("before");
+        try {
+            PostPage.decodeCursor(before);
+        } catch (IllegalArgumentException e) {
+            logger.warn("GET request received with invalid cursor: {}", before);
+            response.setStatus(HttpStatus.BAD_REQUEST_400);
+            response.setContentType("application/json; charset=UTF-8");
+            response.getWriter().write("{\"error\": \"Invalid cursor\"}");
+            return;
+        }
+        
+        // タイムラインのバージョンが変わっていなければ投稿データを読まずに304を返す
+        String etag = "\"posts-" + postRepo.getTimelineVersion() + "\"";
+        response.setHeader("ETag", etag);
+        response.setHeader("Cache-Control", "no-cache");
+        if (etagMatches(request.getHeader("If-None-Match"), etag)) {
+            logger.debug("Timeline not modified: {}", etag);
+            response.setStatus(HttpStatus.NOT_MODIFIED_304);
+            return;
+        }
         
-        logger.debug("Retrieved {} posts from Redis", posts.size());
         response.setContentType("application/json; charset=UTF-8");
-        response.getWriter().write(json);
+        try {
+            writePage(request, response, limit, before);
+        } catch (RuntimeException e) {
+            // 送信前なら書きかけの本文を捨てて通常のエラー応答にする
+            if (!response.isCommitted()) {
+                response.reset();
+                throw e;
+            }
+            logger.error("Failed to stream posts page after response was committed", e);
+        } catch (IOException e) {
+            if (!response.isCommitted()) {
+                response.reset();
+                throw e;
+            }
+            // 送信中にクライアントが切断した（応答は返せないのでエラー扱いにしない）
+            logger.debug("Client disconnected while streaming posts page: {}", e.getMessage());
+        }
+    }
+    
+    // Redisから読み出した投稿を1件ずつそのまま出力ストリームへ書き出す（ページ全体を保持しない）
+    // 出力は {"posts":[...],"nextCursor":...,"total":...} で PostPage と同じ形
+    private void writePage(Request request, Response response, int limit, String before) throws IOException {
+        // 投稿数に比例して大きくなるため、しきい値を超えたら圧縮して返す
+        OutputStream out = compressor.wrap(request, response);
+        // 読み出し（redis）と送信（write）はそれぞれのフェーズに数えられ、残りがJSONの生成時間になる
+        RequestTiming.enter(RequestTiming.Phase.SERIALIZE);
+        try {
+            JsonGenerator generator = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8);
+            generator.writeStartObject();
+            generator.writeArrayFieldStart("posts");
+            PostPage page = postRepo.streamPage(limit, before, generator::writeObject);
+            generator.writeEndArray();
+            generator.writeStringField("nextCursor", page.getNextCursor());
+            generator.writeNumberField("total", page.getTotal());
+            generator.writeEndObject();
+            // 途中で失敗した場合は閉じない（閉じると書きかけの本文が送信されてしまう）
+            generator.close();
+        } finally {
+            RequestTiming.exit(RequestTiming.Phase.SERIALIZE);
+        }
+    }
+    
+    private boolean etagMatches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals(etag) || tag.equals("*")) {
+                return true;
+            }
+        }
+        return false;
     }
     
     private void handlePostMessage(Request request, Response response) throws Exception {
@@ -102,8 +215,14 @@ public class ApiPostsHandler extends HttpHandler {
         String userId = claims.getSubject();
         String username = (String) claims.get("username");
         
-        Map<String, Object> body = parseJsonBody(request);
-        String message = (String) body.get("message");
+        RequestDecoder.NewPostRequest body;
+        try {
+            body = requestDecoder.readNewPost(request);
+        } catch (RequestDecoder.InvalidBodyException e) {
+            requestDecoder.sendError(response, e);
+            return;
+        }
+        String message = body.getMessage();
         
         if (message == null || message.trim().isEmpty()) {
             logger.warn("POST request received with empty message from user: {}", username);
@@ -121,7 +240,14 @@ public class ApiPostsHandler extends HttpHandler {
         
         logger.info("Post created successfully with ID: {} by user: {}", post.getId(), username);
         response.setContentType("application/json; charset=UTF-8");
-        response.getWriter().write(objectMapper.writeValueAsString(post));
+        String json;
+        RequestTiming.enter(RequestTiming.Phase.SERIALIZE);
+        try {
+            json = objectMapper.writeValueAsString(post);
+        } finally {
+            RequestTiming.exit(RequestTiming.Phase.SERIALIZE);
+        }
+        response.getWriter().write(json);
     }
     
     private void handleDeletePost(Request request, Response response, String id) throws Exception {
@@ -137,11 +263,11 @@ public class ApiPostsHandler extends HttpHandler {
         }
         
         String username = (String) claims.get("username");
-        @SuppressWarnings("unchecked")
-        Set<String> roles = (Set<String>) claims.get("roles");
+        // JSONの配列はListとして読まれる
+        Object roles = claims.get("roles");
         
         // admin権限チェック
-        if (!roles.contains("admin")) {
+        if (!(roles instanceof Collection) || !((Collection<?>) roles).contains("admin")) {
             logger.warn("DELETE request denied for non-admin user: {}", username);
             response.setStatus(HttpStatus.FORBIDDEN_403);
             response.setContentType("application/json; charset=UTF-8");
@@ -149,7 +275,7 @@ public class ApiPostsHandler extends HttpHandler {
             return;
         }
         
-        boolean deleted = postRepo.delete(id);
+        boolean deleted = postRepo.delete(id).isPresent();
         if (deleted) {
             logger.info("Post deleted successfully: {} by admin: {}", id, username);
             response.setStatus(HttpStatus.OK_200);
@@ -162,21 +288,4 @@ public class ApiPostsHandler extends HttpHandler {
             response.getWriter().write("{\"error\": \"Post not found\"}");
         }
     }
-    
-    private Map<String, Object> parseJsonBody(Request request) throws Exception {
-        StringBuilder jsonBuilder = new StringBuilder();
-        BufferedReader reader = new BufferedReader(
-            new InputStreamReader(request.getInputStream(), "UTF-8"));
-        String line;
-        while ((line = reader.readLine()) != null) {
-            jsonBuilder.append(line);
-        }
-        
-        String jsonBody = jsonBuilder.toString();
-        logger.debug("JSON body: {}", jsonBody);
-        
-        @SuppressWarnings("unchecked")
-        Map<String, Object> jsonMap = objectMapper.readValue(jsonBody, Map.class);
-        return jsonMap;
-    }
 }
@@ -0,0 +1,123 @@
+package app.handlers;
+
+import io.jsonwebtoken.Claims;
+import org.glassfish.grizzly.Connection;
+import org.glassfish.grizzly.WriteHandler;
+import org.glassfish.grizzly.websockets.ProtocolHandler;
+import org.glassfish.grizzly.websockets.SimpleWebSocket;
+import org.glassfish.grizzly.websockets.WebSocketListener;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// 掲示板WebSocket接続（送信キューは接続ごとに上限あり）
+public class BoardSocket extends SimpleWebSocket {
+    private final ArrayBlockingQueue<byte[]> outbound;
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private final long connectedAt = System.currentTimeMillis();
+    
+    // auth メッセージで認証されるまでは null（ブロードキャスト対象外）
+    private volatile Claims claims;
+    // アクセストークンの有効期限（期限を過ぎたら再認証するまで操作させない）
+    private volatile long expiresAt;
+    // 入力中通知を最後に配信した時刻（接続ごとの間引き用）
+    private volatile long lastTypingAt;
+    
+    public BoardSocket(ProtocolHandler protocolHandler, int queueCapacity, WebSocketListener... listeners) {
+        super(protocolHandler, listeners);
+        this.outbound = new ArrayBlockingQueue<>(queueCapacity);
+    }
+    
+    // テキストフレームにエンコード
+    public byte[] encode(String text) {
+        return toRawData(text);
+    }
+    
+    // 同じキーの接続どうしはエンコードしたフレームを共有できる（マスクするハンドラーはフレームごとにマスク値が変わるため null）
+    public Object frameFormat() {
+        return protocolHandler.isMaskData() ? null : protocolHandler.getClass();
+    }
+    
+    // キューが一杯（遅いクライアント）の場合は false
+    public boolean enqueue(byte[] frame, Executor executor) {
+        if (!outbound.offer(frame)) {
+            return false;
+        }
+        scheduleDrain(executor);
+        return true;
+    }
+    
+    public Claims getClaims() {
+        return claims;
+    }
+    
+    // 再認証（新しいトークンでの auth）でも呼ばれ、ロールと有効期限を置き換える
+    public void setClaims(Claims claims) {
+        this.expiresAt = claims.getExpiration() != null ? claims.getExpiration().getTime() : Long.MAX_VALUE;
+        this.claims = claims;
+    }
+    
+    public boolean isAuthenticated() {
+        return claims != null;
+    }
+    
+    public boolean isExpired(long now) {
+        return claims != null && expiresAt <= now;
+    }
+    
+    // 前回の配信から interval 経っていなければ false（超えた分は捨てる）
+    public boolean tryTyping(long now, long interval) {
+        if (now - lastTypingAt < interval) {
+            return false;
+        }
+        lastTypingAt = now;
+        return true;
+    }
+    
+    public long getConnectedAt() {
+        return connectedAt;
+    }
+    
+    private void scheduleDrain(Executor executor) {
+        if (draining.compareAndSet(false, true)) {
+            executor.execute(() -> drain(executor));
+        }
+    }
+    
+    private void drain(Executor executor) {
+        Connection<?> connection = protocolHandler.getConnection();
+        try {
+            byte[] frame;
+            while (isConnected() && connection.canWrite() && (frame = outbound.poll()) != null) {
+                sendRaw(frame);
+            }
+        } finally {
+            draining.set(false);
+        }
+        
+        if (!isConnected()) {
+            outbound.clear();
+            return;
+        }
+        
+        if (!outbound.isEmpty()) {
+            if (connection.canWrite()) {
+                scheduleDrain(executor);
+            } else {
+                // ソケットの書き込みバッファが空くまで待つ
+                connection.notifyCanWrite(new WriteHandler() {
+                    @Override
+                    public void onWritePossible() {
+                        scheduleDrain(executor);
+                    }
+                    
+                    @Override
+                    public void onError(Throwable t) {
+                        outbound.clear();
+                    }
+                });
+            }
+        }
+    }
+}
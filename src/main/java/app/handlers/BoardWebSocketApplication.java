@@ -0,0 +1,258 @@
+package app.handlers;
+
+import app.security.JwtService;
+import app.store.PostEvent;
+import app.store.PostRepo;
+import app.store.TimelineChannel;
+import io.jsonwebtoken.Claims;
+import org.glassfish.grizzly.http.HttpRequestPacket;
+import org.glassfish.grizzly.websockets.DataFrame;
+import org.glassfish.grizzly.websockets.ProtocolHandler;
+import org.glassfish.grizzly.websockets.WebSocket;
+import org.glassfish.grizzly.websockets.WebSocketApplication;
+import org.glassfish.grizzly.websockets.WebSocketListener;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// /ws/board: 投稿イベントの配信、入力中表示、管理者によるライブモデレーション
+public class BoardWebSocketApplication extends WebSocketApplication implements TimelineChannel.Listener {
+    private static final Logger logger = LoggerFactory.getLogger(BoardWebSocketApplication.class);
+    
+    private static final int QUEUE_CAPACITY = 64;
+    private static final long AUTH_TIMEOUT_MS = 10_000;
+    // 入力中通知は1接続あたり1秒に1回まで配信する
+    private static final long TYPING_INTERVAL_MS = 1_000;
+    // 遅いクライアントを切断する際のクローズコード（RFC 6455: Try Again Later）
+    private static final int CLOSE_TRY_AGAIN_LATER = 1013;
+    private static final int CLOSE_POLICY_VIOLATION = 1008;
+    
+    private final JwtService jwtService;
+    private final PostRepo postRepo;
+    private final ObjectMapper objectMapper;
+    private final Set<BoardSocket> sockets = ConcurrentHashMap.newKeySet();
+    private final ExecutorService writers;
+    private final ScheduledExecutorService authReaper;
+    
+    public BoardWebSocketApplication(JwtService jwtService, PostRepo postRepo, TimelineChannel channel) {
+        this.jwtService = jwtService;
+        this.postRepo = postRepo;
+        this.objectMapper = new ObjectMapper();
+        this.writers = Executors.newFixedThreadPool(2, r -> {
+            Thread thread = new Thread(r, "ws-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.authReaper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ws-auth-reaper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        authReaper.scheduleAtFixedRate(this::closeUnauthorized, AUTH_TIMEOUT_MS, AUTH_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        channel.addListener(this);
+    }
+    
+    @Override
+    public WebSocket createSocket(ProtocolHandler handler, HttpRequestPacket requestPacket, WebSocketListener... listeners) {
+        return new BoardSocket(handler, QUEUE_CAPACITY, listeners);
+    }
+    
+    @Override
+    public void onConnect(WebSocket socket) {
+        sockets.add((BoardSocket) socket);
+        logger.debug("WebSocket connected, {} connections", sockets.size());
+    }
+    
+    @Override
+    public void onClose(WebSocket socket, DataFrame frame) {
+        sockets.remove((BoardSocket) socket);
+        logger.debug("WebSocket closed, {} connections", sockets.size());
+    }
+    
+    @Override
+    protected boolean onError(WebSocket socket, Throwable t) {
+        logger.debug("WebSocket error: {}", t.getMessage());
+        sockets.remove((BoardSocket) socket);
+        return true;
+    }
+    
+    @Override
+    public void onMessage(WebSocket webSocket, String text) {
+        BoardSocket socket = (BoardSocket) webSocket;
+        
+        JsonNode message;
+        try {
+            message = objectMapper.readTree(text);
+        } catch (Exception e) {
+            logger.debug("Ignoring malformed WebSocket message");
+            return;
+        }
+        
+        String type = message.path("type").asText();
+        if ("auth".equals(type)) {
+            authenticate(socket, message.path("token").asText(null));
+            return;
+        }
+        
+        if (!socket.isAuthenticated()) {
+            socket.close(CLOSE_POLICY_VIOLATION, "authentication required");
+            return;
+        }
+        // 認証はトークンの有効期限までしか使わない（期限後は新しいトークンで再接続させる）
+        long now = System.currentTimeMillis();
+        if (socket.isExpired(now)) {
+            closeExpired(socket);
+            return;
+        }
+        
+        if ("typing".equals(type)) {
+            // 入力中表示は自ノードの接続にのみ配信する（間隔内の通知は捨てる）
+            if (socket.tryTyping(now, TYPING_INTERVAL_MS)) {
+                broadcast(Map.of("type", "typing", "username", String.valueOf(socket.getClaims().get("username"))), socket);
+            }
+        } else if ("delete".equals(type)) {
+            moderateDelete(socket, message.path("id").asText(null));
+        }
+    }
+    
+    @Override
+    public void onEvent(PostEvent event) {
+        if (PostEvent.CREATED.equals(event.getType())) {
+            broadcast(Map.of("type", "post-created", "post", event.getPost()), null);
+        } else if (PostEvent.DELETED.equals(event.getType())) {
+            broadcast(Map.of("type", "post-deleted", "id", event.getPostId()), null);
+        }
+    }
+    
+    @Override
+    public void onResubscribe() {
+        broadcast(Map.of("type", "reset"), null);
+    }
+    
+    public int getConnectionCount() {
+        return sockets.size();
+    }
+    
+    public void close() {
+        authReaper.shutdownNow();
+        writers.shutdownNow();
+    }
+    
+    private void authenticate(BoardSocket socket, String token) {
+        try {
+            Claims claims = jwtService.verifyAccess(token);
+            socket.setClaims(claims);
+            send(socket, Map.of("type", "ready", "username", String.valueOf(claims.get("username"))));
+            logger.debug("WebSocket authenticated for user: {}", claims.get("username"));
+        } catch (Exception e) {
+            logger.warn("WebSocket authentication failed: {}", e.getMessage());
+            socket.close(CLOSE_POLICY_VIOLATION, "token_expired");
+        }
+    }
+    
+    private void moderateDelete(BoardSocket socket, String postId) {
+        if (socket.isExpired(System.currentTimeMillis())) {
+            closeExpired(socket);
+            return;
+        }
+        Object roles = socket.getClaims().get("roles");
+        if (!(roles instanceof Collection) || !((Collection<?>) roles).contains("admin")) {
+            logger.warn("WebSocket delete denied for non-admin user: {}", socket.getClaims().get("username"));
+            send(socket, Map.of("type", "error", "error", "Admin privileges required"));
+            return;
+        }
+        if (postId == null || postId.isEmpty()) {
+            send(socket, Map.of("type", "error", "error", "Post id is required"));
+            return;
+        }
+        
+        // 削除結果は post-deleted イベントとして全接続に配信される
+        boolean deleted = postRepo.delete(postId).isPresent();
+        logger.info("Post {} via WebSocket: {} by admin: {}", deleted ? "deleted" : "not found", postId,
+            socket.getClaims().get("username"));
+        send(socket, Map.of("type", "delete-result", "id", postId, "success", deleted));
+    }
+    
+    private void send(BoardSocket socket, Object payload) {
+        try {
+            byte[] frame = socket.encode(objectMapper.writeValueAsString(payload));
+            if (!socket.enqueue(frame, writers)) {
+                dropSlowConsumer(socket);
+            }
+        } catch (Exception e) {
+            logger.error("Failed to send WebSocket message", e);
+        }
+    }
+    
+    // ペイロードは1回だけJSON化し、フレームはプロトコルハンドラーの種類ごとに1回だけ作って共有する
+    private void broadcast(Object payload, BoardSocket except) {
+        String text = null;
+        Map<Object, byte[]> frames = null;
+        for (BoardSocket socket : sockets) {
+            if (socket == except || !socket.isAuthenticated()) {
+                continue;
+            }
+            
+            byte[] frame;
+            try {
+                if (text == null) {
+                    text = objectMapper.writeValueAsString(payload);
+                    frames = new HashMap<>(4);
+                }
+                Object format = socket.frameFormat();
+                frame = format != null ? frames.get(format) : null;
+                if (frame == null) {
+                    frame = socket.encode(text);
+                    if (format != null) {
+                        frames.put(format, frame);
+                    }
+                }
+            } catch (Exception e) {
+                logger.error("Failed to encode WebSocket broadcast", e);
+                return;
+            }
+            
+            // 送信キューが溢れた接続はブロードキャスト側を止めずに切断する
+            if (!socket.enqueue(frame, writers)) {
+                dropSlowConsumer(socket);
+            }
+        }
+    }
+    
+    private void dropSlowConsumer(BoardSocket socket) {
+        logger.warn("Dropping slow WebSocket consumer: {}", socket.getClaims() != null ? socket.getClaims().get("username") : "-");
+        sockets.remove(socket);
+        socket.close(CLOSE_TRY_AGAIN_LATER, "slow consumer");
+    }
+    
+    private void closeExpired(BoardSocket socket) {
+        logger.debug("Closing WebSocket with expired token for user: {}", socket.getClaims().get("username"));
+        sockets.remove(socket);
+        socket.close(CLOSE_POLICY_VIOLATION, "token_expired");
+    }
+    
+    // 認証しないまま一定時間経った接続と、トークンの期限が切れた接続を閉じる
+    private void closeUnauthorized() {
+        long now = System.currentTimeMillis();
+        long deadline = now - AUTH_TIMEOUT_MS;
+        for (BoardSocket socket : sockets) {
+            if (!socket.isAuthenticated() && socket.getConnectedAt() < deadline) {
+                sockets.remove(socket);
+                socket.close(CLOSE_POLICY_VIOLATION, "authentication timeout");
+            } else if (socket.isExpired(now)) {
+                closeExpired(socket);
+            }
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package app.handlers;
+
+import app.store.StoreUnavailableException;
+import org.glassfish.grizzly.http.server.Response;
+import org.glassfish.grizzly.http.util.HttpStatus;
+
+import java.io.IOException;
+
+// 混雑時（ハッシュ計算のキューが満杯・ストレージの接続が借りられない）はワーカーを待たせずに 503 + Retry-After で断る
+final class LoadShedding {
+    private static final String RETRY_AFTER = System.getenv().getOrDefault("RETRY_AFTER_SEC", "1");
+    
+    private LoadShedding() {
+    }
+    
+    static boolean isOverloaded(Throwable e) {
+        return StoreUnavailableException.isCause(e);
+    }
+    
+    static void sendBusy(Response response) throws IOException {
+        response.setStatus(HttpStatus.SERVICE_UNAVAILABLE_503);
+        response.setHeader("Retry-After", RETRY_AFTER);
+        response.setContentType("application/json; charset=UTF-8");
+        response.getWriter().write("{\"error\": \"Server busy, please retry\"}");
+    }
+}
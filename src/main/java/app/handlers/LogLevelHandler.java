@@ -0,0 +1,85 @@
+package app.handlers;
+
+import app.logging.LogControl;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.jsonwebtoken.Claims;
+import org.glassfish.grizzly.http.Method;
+import org.glassfish.grizzly.http.server.HttpHandler;
+import org.glassfish.grizzly.http.server.Request;
+import org.glassfish.grizzly.http.server.Response;
+import org.glassfish.grizzly.http.util.HttpStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.Map;
+
+// ログレベルの参照・変更（admin のみ。AuthFilter の後ろに置く）
+//   GET  /admin/loggers                                      → 明示的にレベルが設定されているロガーの一覧
+//   POST /admin/loggers {"name": "app.store", "level": "DEBUG"} → 変更（level が null なら親のレベルに戻す）
+// 変更は再起動すると logback.xml の設定に戻る
+public class LogLevelHandler extends HttpHandler {
+    private static final Logger logger = LoggerFactory.getLogger(LogLevelHandler.class);
+    
+    private final LogControl logControl;
+    private final RequestDecoder requestDecoder;
+    private final ObjectMapper objectMapper;
+    
+    public LogLevelHandler(LogControl logControl, RequestDecoder requestDecoder, ObjectMapper objectMapper) {
+        this.logControl = logControl;
+        this.requestDecoder = requestDecoder;
+        this.objectMapper = objectMapper;
+    }
+    
+    @Override
+    public void service(Request request, Response response) throws Exception {
+        // AuthFilterで設定された認証情報（JSONの配列はListとして読まれる）
+        Claims claims = (Claims) request.getAttribute("auth");
+        Object roles = claims != null ? claims.get("roles") : null;
+        if (!(roles instanceof Collection) || !((Collection<?>) roles).contains("admin")) {
+            logger.warn("Log level request denied for non-admin user: {}", claims != null ? claims.get("username") : null);
+            writeJson(response, HttpStatus.FORBIDDEN_403, Map.of("error", "Admin privileges required"));
+            return;
+        }
+        
+        Method method = request.getMethod();
+        if (method == Method.GET) {
+            writeJson(response, HttpStatus.OK_200, Map.of("loggers", logControl.getConfiguredLevels()));
+        } else if (method == Method.POST) {
+            handleSetLevel(request, response, String.valueOf(claims.get("username")));
+        } else {
+            response.setStatus(HttpStatus.METHOD_NOT_ALLOWED_405);
+            response.setHeader("Allow", "GET, POST");
+        }
+    }
+    
+    private void handleSetLevel(Request request, Response response, String username) throws Exception {
+        RequestDecoder.LogLevelRequest body;
+        try {
+            body = requestDecoder.readLogLevel(request);
+        } catch (RequestDecoder.InvalidBodyException e) {
+            requestDecoder.sendError(response, e);
+            return;
+        }
+        
+        if (body.getName() == null || body.getName().trim().isEmpty()) {
+            writeJson(response, HttpStatus.BAD_REQUEST_400, Map.of("error", "Logger name is required"));
+            return;
+        }
+        
+        try {
+            Map<String, String> updated = logControl.setLevel(body.getName().trim(), body.getLevel());
+            logger.info("Log level changed by {}: {} -> {}", username, updated.get("name"), updated.get("level"));
+            writeJson(response, HttpStatus.OK_200, updated);
+        } catch (IllegalArgumentException e) {
+            writeJson(response, HttpStatus.BAD_REQUEST_400, Map.of("error", e.getMessage()));
+        }
+    }
+    
+    private void writeJson(Response response, HttpStatus status, Object body) throws Exception {
+        response.setStatus(status);
+        response.setContentType("application/json; charset=UTF-8");
+        response.setHeader("Cache-Control", "no-store");
+        response.getWriter().write(objectMapper.writeValueAsString(body));
+    }
+}
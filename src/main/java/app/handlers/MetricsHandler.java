@@ -0,0 +1,55 @@
+package app.handlers;
+
+import app.metrics.MetricsRegistry;
+import io.jsonwebtoken.Claims;
+import org.glassfish.grizzly.http.Method;
+import org.glassfish.grizzly.http.server.HttpHandler;
+import org.glassfish.grizzly.http.server.Request;
+import org.glassfish.grizzly.http.server.Response;
+import org.glassfish.grizzly.http.util.HttpStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+
+// GET /metrics（Prometheus のテキスト形式、admin のみ。AuthFilter の後ろに置く）
+public class MetricsHandler extends HttpHandler {
+    private static final Logger logger = LoggerFactory.getLogger(MetricsHandler.class);
+    
+    private final MetricsRegistry registry;
+    private final ResponseCompressor compressor;
+    
+    public MetricsHandler(MetricsRegistry registry, ResponseCompressor compressor) {
+        this.registry = registry;
+        this.compressor = compressor;
+    }
+    
+    @Override
+    public void service(Request request, Response response) throws Exception {
+        if (request.getMethod() != Method.GET) {
+            response.setStatus(HttpStatus.METHOD_NOT_ALLOWED_405);
+            response.setHeader("Allow", "GET");
+            return;
+        }
+        
+        // AuthFilterで設定された認証情報（JSONの配列はListとして読まれる）
+        Claims claims = (Claims) request.getAttribute("auth");
+        Object roles = claims != null ? claims.get("roles") : null;
+        if (!(roles instanceof Collection) || !((Collection<?>) roles).contains("admin")) {
+            logger.warn("Metrics request denied for non-admin user: {}", claims != null ? claims.get("username") : null);
+            response.setStatus(HttpStatus.FORBIDDEN_403);
+            response.setContentType("application/json; charset=UTF-8");
+            response.getWriter().write("{\"error\": \"Admin privileges required\"}");
+            return;
+        }
+        
+        byte[] body = registry.scrape().getBytes(StandardCharsets.UTF_8);
+        response.setContentType("text/plain; version=0.0.4; charset=UTF-8");
+        response.setHeader("Cache-Control", "no-store");
+        try (OutputStream out = compressor.wrap(request, response)) {
+            out.write(body);
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package app.handlers;
+
+import app.store.PostEvent;
+import app.store.TimelineChannel;
+import org.glassfish.grizzly.EmptyCompletionHandler;
+import org.glassfish.grizzly.http.io.NIOWriter;
+import org.glassfish.grizzly.http.server.Request;
+import org.glassfish.grizzly.http.server.Response;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Server-Sent Events で投稿の作成・削除を配信する（イベントIDはタイムラインバージョン）
+public class PostStreamHub implements TimelineChannel.Listener {
+    private static final Logger logger = LoggerFactory.getLogger(PostStreamHub.class);
+    
+    private static final int REPLAY_BUFFER_SIZE = 256;
+    private static final long HEARTBEAT_INTERVAL_SEC = 20;
+    private static final String RETRY_MS = "3000";
+    
+    private final ObjectMapper objectMapper;
+    private final Set<Client> clients = ConcurrentHashMap.newKeySet();
+    // Last-Event-ID による再開用（バージョン → フレーム）
+    // 複数ノードでは pub/sub の到着順がバージョン順とは限らないため、到着順ではなくバージョン順に並べる
+    private final TreeMap<Long, Frame> replayBuffer = new TreeMap<>();
+    // 配信済みの最大のイベントID（replayBuffer のロック内で更新）
+    private long lastBroadcastId;
+    private final ScheduledExecutorService heartbeat;
+    
+    public PostStreamHub(TimelineChannel channel) {
+        this.objectMapper = new ObjectMapper();
+        this.heartbeat = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "sse-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        heartbeat.scheduleAtFixedRate(this::sendHeartbeat, HEARTBEAT_INTERVAL_SEC, HEARTBEAT_INTERVAL_SEC, TimeUnit.SECONDS);
+        channel.addListener(this);
+    }
+    
+    public void subscribe(Request request, Response response) throws Exception {
+        response.setContentType("text/event-stream; charset=UTF-8");
+        response.setHeader("Cache-Control", "no-cache");
+        response.setHeader("X-Accel-Buffering", "no");
+        
+        Client client = new Client(response);
+        
+        // 接続が閉じられたら購読を解除する
+        response.suspend(-1, TimeUnit.MILLISECONDS, new EmptyCompletionHandler<Response>() {
+            @Override
+            public void cancelled() {
+                remove(client);
+            }
+            
+            @Override
+            public void failed(Throwable throwable) {
+                remove(client);
+            }
+        });
+        
+        // 再開位置より後のイベントを送り直してから配信対象に加える
+        // （配信と同じロック内で行い、イベントの欠落・重複・順序逆転を防ぐ）
+        String lastEventId = request.getHeader("Last-Event-ID");
+        synchronized (replayBuffer) {
+            StringBuilder initial = new StringBuilder("retry: ").append(RETRY_MS).append("\n\n");
+            if (lastEventId != null && !lastEventId.isEmpty()) {
+                List<Frame> missed = null;
+                try {
+                    missed = eventsAfter(Long.parseLong(lastEventId.trim()));
+                } catch (NumberFormatException e) {
+                    logger.debug("Invalid Last-Event-ID: {}", lastEventId);
+                }
+                
+                if (missed == null) {
+                    // バッファで補えない場合はクライアントに再取得させる
+                    initial.append("event: reset\ndata: {}\n\n");
+                } else {
+                    for (Frame frame : missed) {
+                        initial.append(frame.text);
+                    }
+                }
+            }
+            
+            if (!client.send(initial.toString())) {
+                client.close();
+                return;
+            }
+            clients.add(client);
+        }
+        logger.debug("SSE client connected (Last-Event-ID: {}), {} clients", lastEventId, clients.size());
+    }
+    
+    @Override
+    public void onEvent(PostEvent event) {
+        String type;
+        Object data;
+        if (PostEvent.CREATED.equals(event.getType())) {
+            type = "post-created";
+            data = event.getPost();
+        } else if (PostEvent.DELETED.equals(event.getType())) {
+            type = "post-deleted";
+            data = Map.of("id", event.getPostId());
+        } else {
+            return;
+        }
+        
+        Frame frame;
+        try {
+            // イベントごとに1回だけエンコードして全クライアントで共有する
+            frame = new Frame(event.getVersion(),
+                "event: " + type + "\ndata: " + objectMapper.writeValueAsString(data) + "\n\n");
+        } catch (Exception e) {
+            logger.error("Failed to encode SSE event: {}", event, e);
+            return;
+        }
+        
+        synchronized (replayBuffer) {
+            replayBuffer.put(frame.id, frame);
+            if (replayBuffer.size() > REPLAY_BUFFER_SIZE) {
+                replayBuffer.pollFirstEntry();
+            }
+            
+            // 配信済みより古いイベント（遅れて届いたもの）は id を付けずに送る
+            // （クライアントの Last-Event-ID が戻らないため、再接続時に新しいイベントを送り直さずに済む）
+            if (frame.id > lastBroadcastId) {
+                lastBroadcastId = frame.id;
+                broadcast(frame.text);
+            } else {
+                broadcast(frame.body);
+            }
+        }
+    }
+    
+    @Override
+    public void onResubscribe() {
+        // pub/subが切れていた間のイベントは再送できない
+        synchronized (replayBuffer) {
+            replayBuffer.clear();
+            broadcast("event: reset\ndata: {}\n\n");
+        }
+    }
+    
+    public int getClientCount() {
+        return clients.size();
+    }
+    
+    public void close() {
+        heartbeat.shutdownNow();
+        for (Client client : new ArrayList<>(clients)) {
+            remove(client);
+        }
+    }
+    
+    // lastId より後のイベントをバージョン順に返す。バッファが lastId の次まで遡れない（古いイベントが押し出された）場合は null
+    // バッファ内の欠番（まだ届いていないイベント）は許容し、届いた時点で配信する
+    private List<Frame> eventsAfter(long lastId) {
+        if (!replayBuffer.isEmpty() && replayBuffer.firstKey() > lastId + 1) {
+            return null;
+        }
+        return new ArrayList<>(replayBuffer.tailMap(lastId, false).values());
+    }
+    
+    private void broadcast(String text) {
+        for (Client client : clients) {
+            if (!client.send(text)) {
+                remove(client);
+            }
+        }
+    }
+    
+    private void sendHeartbeat() {
+        broadcast(": ping\n\n");
+    }
+    
+    private void remove(Client client) {
+        if (clients.remove(client)) {
+            client.close();
+            logger.debug("SSE client disconnected, {} clients", clients.size());
+        }
+    }
+    
+    private static final class Frame {
+        private final long id;
+        // id 行を除いた本体（遅れて届いたイベントの配信用）
+        private final String body;
+        private final String text;
+        
+        Frame(long id, String body) {
+            this.id = id;
+            this.body = body;
+            this.text = "id: " + id + "\n" + body;
+        }
+    }
+    
+    private static final class Client {
+        private final Response response;
+        private boolean closed;
+        
+        Client(Response response) {
+            this.response = response;
+        }
+        
+        synchronized boolean send(String text) {
+            if (closed) {
+                return false;
+            }
+            
+            try {
+                NIOWriter writer = response.getNIOWriter();
+                // 書き込みキューが溜まっている遅いクライアントは切断する（再接続時に再開される）
+                if (!writer.canWrite()) {
+                    return false;
+                }
+                writer.write(text);
+                writer.flush();
+                return true;
+            } catch (Exception e) {
+                return false;
+            }
+        }
+        
+        synchronized void close() {
+            if (closed) {
+                return;
+            }
+            
+            closed = true;
+            try {
+                if (response.isSuspended()) {
+                    response.resume();
+                }
+            } catch (Exception e) {
+                logger.debug("Failed to resume SSE response: {}", e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package app.handlers;
+
+import app.metrics.RequestTiming;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.glassfish.grizzly.http.server.Request;
+import org.glassfish.grizzly.http.server.Response;
+import org.glassfish.grizzly.http.util.HttpStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+// APIのJSONリクエスト本文を型付きのDTOに読み込む（入力ストリームから直接読み、サイズ上限を超えたら413）
+public class RequestDecoder {
+    private static final Logger logger = LoggerFactory.getLogger(RequestDecoder.class);
+    
+    private final int maxBodySize;
+    private final ObjectReader signupReader;
+    private final ObjectReader signinReader;
+    private final ObjectReader newPostReader;
+    private final ObjectReader logLevelReader;
+    
+    public RequestDecoder(ObjectMapper objectMapper) {
+        this.maxBodySize = Integer.parseInt(System.getenv().getOrDefault("REQUEST_MAX_BODY_SIZE", "65536"));
+        // 未知のフィールドは従来どおり無視する
+        ObjectReader reader = objectMapper.reader().without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        this.signupReader = reader.forType(SignupRequest.class);
+        this.signinReader = reader.forType(SigninRequest.class);
+        this.newPostReader = reader.forType(NewPostRequest.class);
+        this.logLevelReader = reader.forType(LogLevelRequest.class);
+        
+        logger.info("RequestDecoder initialized - max body size: {} bytes", maxBodySize);
+    }
+    
+    public SignupRequest readSignup(Request request) throws InvalidBodyException, IOException {
+        return read(request, signupReader);
+    }
+    
+    public SigninRequest readSignin(Request request) throws InvalidBodyException, IOException {
+        return read(request, signinReader);
+    }
+    
+    public NewPostRequest readNewPost(Request request) throws InvalidBodyException, IOException {
+        return read(request, newPostReader);
+    }
+    
+    public LogLevelRequest readLogLevel(Request request) throws InvalidBodyException, IOException {
+        return read(request, logLevelReader);
+    }
+    
+    // InvalidBodyException をエラーレスポンスとして返す
+    public void sendError(Response response, InvalidBodyException e) throws IOException {
+        response.setStatus(e.getStatus());
+        response.setContentType("application/json; charset=UTF-8");
+        response.getWriter().write("{\"error\": \"" + e.getMessage() + "\"}");
+    }
+    
+    private <T> T read(Request request, ObjectReader reader) throws InvalidBodyException, IOException {
+        // Content-Length が分かる場合は読む前に断る（chunked の場合は読みながら数える）
+        long contentLength = request.getContentLengthLong();
+        if (contentLength > maxBodySize) {
+            logger.warn("Request body too large: {} bytes (max {})", contentLength, maxBodySize);
+            throw new InvalidBodyException(HttpStatus.REQUEST_ENTITY_TOO_LARGE_413, "Request body too large");
+        }
+        
+        T body;
+        RequestTiming.enter(RequestTiming.Phase.SERIALIZE);
+        try (InputStream in = new LimitedInputStream(request.getInputStream(), maxBodySize)) {
+            body = reader.readValue(in);
+        } catch (BodyTooLargeException e) {
+            logger.warn("Request body too large: more than {} bytes", maxBodySize);
+            throw new InvalidBodyException(HttpStatus.REQUEST_ENTITY_TOO_LARGE_413, "Request body too large");
+        } catch (JsonProcessingException e) {
+            logger.warn("Invalid JSON request body: {}", e.getOriginalMessage());
+            throw new InvalidBodyException(HttpStatus.BAD_REQUEST_400, "Invalid JSON");
+        } finally {
+            RequestTiming.exit(RequestTiming.Phase.SERIALIZE);
+        }
+        
+        // 本文が null リテラルの場合
+        if (body == null) {
+            throw new InvalidBodyException(HttpStatus.BAD_REQUEST_400, "Invalid JSON");
+        }
+        return body;
+    }
+    
+    // 本文が不正（大きすぎる・JSONとして読めない）場合
+    public static class InvalidBodyException extends Exception {
+        private static final long serialVersionUID = 1L;
+        
+        private final HttpStatus status;
+        
+        InvalidBodyException(HttpStatus status, String message) {
+            super(message);
+            this.status = status;
+        }
+        
+        public HttpStatus getStatus() {
+            return status;
+        }
+    }
+    
+    private static final class BodyTooLargeException extends IOException {
+        private static final long serialVersionUID = 1L;
+        
+        BodyTooLargeException() {
+            super("Request body too large");
+        }
+    }
+    
+    // 上限を超えて読もうとした時点で BodyTooLargeException を投げる
+    private static final class LimitedInputStream extends FilterInputStream {
+        private long remaining;
+        
+        LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.remaining = limit;
+        }
+        
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b != -1) {
+                consumed(1);
+            }
+            return b;
+        }
+        
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = in.read(b, off, len);
+            if (n > 0) {
+                consumed(n);
+            }
+            return n;
+        }
+        
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = in.skip(n);
+            consumed(skipped);
+            return skipped;
+        }
+        
+        private void consumed(long n) throws BodyTooLargeException {
+            remaining -= n;
+            if (remaining < 0) {
+                throw new BodyTooLargeException();
+            }
+        }
+    }
+    
+    public static class SignupRequest {
+        @JsonProperty("username")
+        private String username;
+        
+        @JsonProperty("email")
+        private String email;
+        
+        @JsonProperty("password")
+        private String password;
+        
+        public String getUsername() {
+            return username;
+        }
+        
+        public String getEmail() {
+            return email;
+        }
+        
+        public String getPassword() {
+            return password;
+        }
+    }
+    
+    public static class SigninRequest {
+        @JsonProperty("username")
+        private String username;
+        
+        @JsonProperty("password")
+        private String password;
+        
+        public String getUsername() {
+            return username;
+        }
+        
+        public String getPassword() {
+            return password;
+        }
+    }
+    
+    public static class NewPostRequest {
+        @JsonProperty("message")
+        private String message;
+        
+        public String getMessage() {
+            return message;
+        }
+    }
+    
+    public static class LogLevelRequest {
+        @JsonProperty("name")
+        private String name;
+        
+        // null の場合は親ロガーのレベルに戻す
+        @JsonProperty("level")
+        private String level;
+        
+        public String getName() {
+            return name;
+        }
+        
+        public String getLevel() {
+            return level;
+        }
+    }
+}
@@ -0,0 +1,312 @@
+package app.handlers;
+
+import app.metrics.RequestTiming;
+import org.glassfish.grizzly.http.server.Request;
+import org.glassfish.grizzly.http.server.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+// APIレスポンスの動的圧縮（Accept-Encoding に応じて gzip / deflate、しきい値未満は無圧縮）
+public class ResponseCompressor {
+    private static final Logger logger = LoggerFactory.getLogger(ResponseCompressor.class);
+    
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    
+    private final int minSize;
+    private final int level;
+    private final List<String> mimeTypes;
+    private final boolean cpuTimeSupported;
+    
+    private final LongAdder compressedResponses = new LongAdder();
+    private final LongAdder uncompressedResponses = new LongAdder();
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+    private final LongAdder cpuNanos = new LongAdder();
+    
+    public ResponseCompressor() {
+        this.minSize = Integer.parseInt(System.getenv().getOrDefault("COMPRESSION_MIN_SIZE", "1024"));
+        this.level = Integer.parseInt(System.getenv().getOrDefault("COMPRESSION_LEVEL", String.valueOf(Deflater.DEFAULT_COMPRESSION)));
+        this.mimeTypes = Arrays.stream(System.getenv().getOrDefault("COMPRESSION_MIME_TYPES", "application/json,text/plain").split(","))
+            .map(type -> type.trim().toLowerCase(Locale.ROOT))
+            .filter(type -> !type.isEmpty())
+            .collect(Collectors.toList());
+        this.cpuTimeSupported = THREADS.isCurrentThreadCpuTimeSupported();
+        
+        logger.info("ResponseCompressor initialized - min size: {} bytes, level: {}, MIME types: {}", minSize, level, mimeTypes);
+    }
+    
+    // レスポンス本文の書き込み先を返す（Content-Type は呼び出し前に設定しておく）
+    // 閉じてもレスポンス自体は閉じない（送信はハンドラーの終了後にGrizzlyが行うため、その前にヘッダーを追加できる）
+    public OutputStream wrap(Request request, Response response) throws IOException {
+        String coding = null;
+        if (minSize >= 0 && isCompressible(response.getContentType())) {
+            String acceptEncoding = request.getHeader("Accept-Encoding");
+            if (accepts(acceptEncoding, "gzip")) {
+                coding = "gzip";
+            } else if (accepts(acceptEncoding, "deflate")) {
+                coding = "deflate";
+            }
+            // 圧縮の有無で表現が変わるため、キャッシュには Accept-Encoding ごとに保存させる
+            response.addHeader("Vary", "Accept-Encoding");
+        }
+        
+        if (coding == null) {
+            uncompressedResponses.increment();
+            return new ResponseOutputStream(response.getOutputStream());
+        }
+        return new CompressingOutputStream(response, coding);
+    }
+    
+    public long getCompressedResponses() {
+        return compressedResponses.sum();
+    }
+    
+    public long getUncompressedResponses() {
+        return uncompressedResponses.sum();
+    }
+    
+    public long getBytesIn() {
+        return bytesIn.sum();
+    }
+    
+    public long getBytesOut() {
+        return bytesOut.sum();
+    }
+    
+    public long getBytesSaved() {
+        return bytesIn.sum() - bytesOut.sum();
+    }
+    
+    // 圧縮処理に使ったCPU時間（スレッドCPU時間が取得できない環境では経過時間）
+    public long getCpuNanos() {
+        return cpuNanos.sum();
+    }
+    
+    // Accept-Encoding に指定の形式が q=0 以外で含まれているか
+    static boolean accepts(String acceptEncoding, String coding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        
+        for (String part : acceptEncoding.toLowerCase(Locale.ROOT).split(",")) {
+            String[] params = part.trim().split(";");
+            if (!params[0].trim().equals(coding)) {
+                continue;
+            }
+            for (int i = 1; i < params.length; i++) {
+                String param = params[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        return Double.parseDouble(param.substring(2)) > 0;
+                    } catch (NumberFormatException e) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+    
+    private boolean isCompressible(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        
+        String type = contentType.toLowerCase(Locale.ROOT);
+        int semicolon = type.indexOf(';');
+        if (semicolon >= 0) {
+            type = type.substring(0, semicolon);
+        }
+        return mimeTypes.contains(type.trim());
+    }
+    
+    private long cpuTime() {
+        return cpuTimeSupported ? THREADS.getCurrentThreadCpuTime() : System.nanoTime();
+    }
+    
+    // しきい値までは溜めておき、超えた時点で圧縮を開始する（超えなければ無圧縮で Content-Length 付きで送る）
+    private final class CompressingOutputStream extends OutputStream {
+        private final Response response;
+        private final String coding;
+        private final ByteArrayOutputStream buffer;
+        private CountingOutputStream counter;
+        private DeflaterOutputStream compressor;
+        private Deflater deflater;
+        private long written;
+        private boolean closed;
+        
+        CompressingOutputStream(Response response, String coding) {
+            this.response = response;
+            this.coding = coding;
+            this.buffer = new ByteArrayOutputStream(Math.max(minSize, 256));
+        }
+        
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+        
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            written += len;
+            if (compressor != null) {
+                compress(b, off, len);
+                return;
+            }
+            
+            buffer.write(b, off, len);
+            if (buffer.size() >= minSize) {
+                startCompression();
+            }
+        }
+        
+        @Override
+        public void flush() throws IOException {
+            if (compressor != null) {
+                compressor.flush();
+            }
+        }
+        
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            
+            if (compressor == null) {
+                uncompressedResponses.increment();
+                response.setContentLength(buffer.size());
+                RequestTiming.enter(RequestTiming.Phase.WRITE);
+                try {
+                    response.getOutputStream().write(buffer.toByteArray());
+                } finally {
+                    RequestTiming.exit(RequestTiming.Phase.WRITE);
+                }
+                return;
+            }
+            
+            RequestTiming.enter(RequestTiming.Phase.WRITE);
+            try {
+                long start = cpuTime();
+                compressor.finish();
+                cpuNanos.add(cpuTime() - start);
+                compressor.close();
+            } finally {
+                RequestTiming.exit(RequestTiming.Phase.WRITE);
+            }
+            if (deflater != null) {
+                deflater.end();
+            }
+            
+            compressedResponses.increment();
+            bytesIn.add(written);
+            bytesOut.add(counter.count);
+        }
+        
+        private void startCompression() throws IOException {
+            response.setHeader("Content-Encoding", coding);
+            // 強いETagはバイト列ごとに異なる必要があるため、圧縮時は弱いETagにする
+            String etag = response.getHeader("ETag");
+            if (etag != null && !etag.startsWith("W/")) {
+                response.setHeader("ETag", "W/" + etag);
+            }
+            
+            counter = new CountingOutputStream(response.getOutputStream());
+            if ("gzip".equals(coding)) {
+                compressor = new GZIPOutputStream(counter, 8192) {
+                    {
+                        def.setLevel(level);
+                    }
+                };
+            } else {
+                deflater = new Deflater(level);
+                compressor = new DeflaterOutputStream(counter, deflater, 8192);
+            }
+            
+            byte[] buffered = buffer.toByteArray();
+            buffer.reset();
+            compress(buffered, 0, buffered.length);
+        }
+        
+        // 圧縮とレスポンスへの書き込みは write フェーズに数える
+        private void compress(byte[] b, int off, int len) throws IOException {
+            RequestTiming.enter(RequestTiming.Phase.WRITE);
+            try {
+                long start = cpuTime();
+                compressor.write(b, off, len);
+                cpuNanos.add(cpuTime() - start);
+            } finally {
+                RequestTiming.exit(RequestTiming.Phase.WRITE);
+            }
+        }
+    }
+    
+    // 無圧縮の場合の書き込み先（write フェーズの計測のみ）
+    private static final class ResponseOutputStream extends FilterOutputStream {
+        ResponseOutputStream(OutputStream out) {
+            super(out);
+        }
+        
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+        
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            RequestTiming.enter(RequestTiming.Phase.WRITE);
+            try {
+                out.write(b, off, len);
+            } finally {
+                RequestTiming.exit(RequestTiming.Phase.WRITE);
+            }
+        }
+        
+        // flush も送信を始めてしまうため、閉じる際は何もしない
+        @Override
+        public void close() {
+        }
+    }
+    
+    private static final class CountingOutputStream extends FilterOutputStream {
+        private long count;
+        
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+        
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+        
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+        
+        // 圧縮ストリームを閉じてもレスポンスは閉じない
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,369 @@
+package app.handlers;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.net.URL;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystemAlreadyExistsException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.security.MessageDigest;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+// 静的ファイルを起動時にメモリへ読み込み、圧縮済みの版と合わせて保持する
+// HTML以外のファイルは内容ハッシュ付きの名前（api.<hash>.js）でも配信し、HTML内の参照をその名前に書き換える
+public class StaticAssets {
+    private static final Logger logger = LoggerFactory.getLogger(StaticAssets.class);
+    
+    // これより小さいファイルは圧縮しても効果が薄い
+    private static final int MIN_COMPRESS_SIZE = 256;
+    private static final int FINGERPRINT_LENGTH = 10;
+    private static final Pattern ASSET_REFERENCE = Pattern.compile("(src|href)=\"([^\"#?:]+)\"");
+    
+    private static final Map<String, String> CONTENT_TYPES = Map.of(
+        "html", "text/html; charset=UTF-8",
+        "js", "application/javascript; charset=UTF-8",
+        "css", "text/css; charset=UTF-8",
+        "json", "application/json; charset=UTF-8",
+        "svg", "image/svg+xml",
+        "txt", "text/plain; charset=UTF-8",
+        "png", "image/png",
+        "jpg", "image/jpeg",
+        "ico", "image/x-icon");
+    
+    private final Path root;
+    private volatile Map<String, Asset> assets = Collections.emptyMap();
+    private volatile Map<String, String> manifest = Collections.emptyMap();
+    private WatchService watchService;
+    
+    private StaticAssets(Path root) {
+        this.root = root;
+    }
+    
+    // クラスパス（またはjar）上のディレクトリから読み込む
+    public static StaticAssets fromClasspath(String resourceDir) throws IOException {
+        URL url = StaticAssets.class.getClassLoader().getResource(resourceDir);
+        if (url == null) {
+            throw new IOException("Static resource directory not found on classpath: " + resourceDir);
+        }
+        
+        try {
+            URI uri = url.toURI();
+            if ("jar".equals(uri.getScheme())) {
+                try {
+                    FileSystems.newFileSystem(uri, Map.of());
+                } catch (FileSystemAlreadyExistsException e) {
+                    // 既にマウント済み
+                }
+            }
+            return load(Paths.get(uri));
+        } catch (java.net.URISyntaxException e) {
+            throw new IOException("Invalid static resource URL: " + url, e);
+        }
+    }
+    
+    // ディスク上のディレクトリから読み込む（開発モードでの監視用）
+    public static StaticAssets fromDirectory(String dir) throws IOException {
+        return load(Paths.get(dir).toAbsolutePath().normalize());
+    }
+    
+    private static StaticAssets load(Path root) throws IOException {
+        StaticAssets staticAssets = new StaticAssets(root);
+        staticAssets.reload();
+        return staticAssets;
+    }
+    
+    public Asset get(String path) {
+        return assets.get(path);
+    }
+    
+    public int size() {
+        return assets.size();
+    }
+    
+    public synchronized void reload() throws IOException {
+        Map<String, Asset> loaded = new HashMap<>();
+        Map<String, String> fingerprints = new HashMap<>();
+        long originalBytes = 0;
+        long gzipBytes = 0;
+        
+        List<Path> files;
+        try (Stream<Path> stream = Files.walk(root)) {
+            files = stream.filter(Files::isRegularFile)
+                .filter(file -> !file.getFileName().toString().endsWith(".br"))
+                .collect(Collectors.toList());
+        }
+        
+        // HTMLは参照先のハッシュが決まってから読み込む
+        List<Path> htmlFiles = files.stream().filter(StaticAssets::isHtml).collect(Collectors.toList());
+        files.removeAll(htmlFiles);
+        files.addAll(htmlFiles);
+        
+        for (Path file : files) {
+            String path = "/" + root.relativize(file).toString().replace('\\', '/');
+            byte[] content = Files.readAllBytes(file);
+            // 事前圧縮済みのBrotli版（HTMLを書き換えた場合は内容が変わるため使わない）
+            Path brFile = file.resolveSibling(file.getFileName() + ".br");
+            byte[] brotli = Files.isRegularFile(brFile) ? Files.readAllBytes(brFile) : null;
+            
+            if (isHtml(file)) {
+                byte[] rewritten = rewriteReferences(path, content, fingerprints);
+                if (rewritten != content) {
+                    content = rewritten;
+                    brotli = null;
+                }
+            }
+            
+            String contentType = contentType(path);
+            byte[] gzip = isCompressible(contentType) && content.length >= MIN_COMPRESS_SIZE ? gzip(content) : null;
+            if (gzip != null && gzip.length >= content.length) {
+                gzip = null;
+            }
+            
+            long lastModified = Files.getLastModifiedTime(file).toMillis() / 1000 * 1000;
+            String hash = hash(content);
+            loaded.put(path, new Asset(content, gzip, brotli, contentType, hash, lastModified, false));
+            
+            if (!isHtml(file)) {
+                String fingerprinted = fingerprint(path, hash);
+                fingerprints.put(path, fingerprinted);
+                loaded.put(fingerprinted, new Asset(content, gzip, brotli, contentType, hash, lastModified, true));
+            }
+            
+            originalBytes += content.length;
+            gzipBytes += gzip != null ? gzip.length : content.length;
+        }
+        
+        assets = loaded;
+        manifest = Collections.unmodifiableMap(fingerprints);
+        logger.info("Loaded {} static assets from {} ({} bytes, {} bytes gzipped, {} fingerprinted)", files.size(), root,
+            originalBytes, gzipBytes, fingerprints.size());
+    }
+    
+    // 元のパス → ハッシュ付きのパス
+    public Map<String, String> getManifest() {
+        return manifest;
+    }
+    
+    // ディレクトリの変更を監視して再読み込みする（開発モード用）
+    public synchronized void watch() throws IOException {
+        if (watchService != null) {
+            return;
+        }
+        
+        watchService = root.getFileSystem().newWatchService();
+        register(root);
+        
+        Thread watcher = new Thread(this::watchLoop, "static-asset-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+        logger.info("Watching static assets for changes: {}", root);
+    }
+    
+    public synchronized void close() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                logger.debug("Failed to close static asset watcher: {}", e.getMessage());
+            }
+        }
+    }
+    
+    private void watchLoop() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    // 新しく作られたディレクトリも監視する（中身ごとコピーされた場合に備えて配下もたどる）
+                    if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                        Path created = ((Path) key.watchable()).resolve((Path) event.context());
+                        if (Files.isDirectory(created)) {
+                            try {
+                                register(created);
+                            } catch (IOException e) {
+                                logger.warn("Failed to watch new static asset directory {}: {}", created, e.getMessage());
+                            }
+                        }
+                    }
+                }
+                key.reset();
+                
+                try {
+                    reload();
+                } catch (IOException e) {
+                    logger.warn("Failed to reload static assets: {}", e.getMessage());
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            logger.debug("Static asset watcher stopped");
+        }
+    }
+    
+    // start 以下のディレクトリをすべて監視対象にする
+    private void register(Path start) throws IOException {
+        try (Stream<Path> stream = Files.walk(start)) {
+            for (Path dir : stream.filter(Files::isDirectory).collect(Collectors.toList())) {
+                dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            }
+        }
+    }
+    
+    // /js/api.js → /js/api.<hash>.js
+    private static String fingerprint(String path, String hash) {
+        String fingerprint = hash.substring(0, FINGERPRINT_LENGTH);
+        int slash = path.lastIndexOf('/');
+        int dot = path.lastIndexOf('.');
+        if (dot <= slash + 1) {
+            return path + "." + fingerprint;
+        }
+        return path.substring(0, dot) + "." + fingerprint + path.substring(dot);
+    }
+    
+    // src / href の参照先がハッシュ付きで配信されるファイルなら、その名前に書き換える（変更が無ければ同じ配列を返す）
+    private static byte[] rewriteReferences(String htmlPath, byte[] content, Map<String, String> fingerprints) {
+        String html = new String(content, StandardCharsets.UTF_8);
+        Matcher matcher = ASSET_REFERENCE.matcher(html);
+        StringBuilder result = new StringBuilder(html.length());
+        boolean changed = false;
+        
+        while (matcher.find()) {
+            String reference = matcher.group(2);
+            String fingerprinted;
+            try {
+                fingerprinted = fingerprints.get(URI.create(htmlPath).resolve(reference).getPath());
+            } catch (IllegalArgumentException e) {
+                fingerprinted = null;
+            }
+            
+            String replacement = matcher.group();
+            if (fingerprinted != null) {
+                // 相対パスのまま、ファイル名だけを置き換える
+                String fileName = fingerprinted.substring(fingerprinted.lastIndexOf('/') + 1);
+                String rewritten = reference.substring(0, reference.lastIndexOf('/') + 1) + fileName;
+                replacement = matcher.group(1) + "=\"" + rewritten + "\"";
+                changed = true;
+            }
+            matcher.appendReplacement(result, Matcher.quoteReplacement(replacement));
+        }
+        
+        if (!changed) {
+            return content;
+        }
+        matcher.appendTail(result);
+        return result.toString().getBytes(StandardCharsets.UTF_8);
+    }
+    
+    private static boolean isHtml(Path file) {
+        return file.getFileName().toString().endsWith(".html");
+    }
+    
+    private static String contentType(String path) {
+        int dot = path.lastIndexOf('.');
+        String extension = dot >= 0 ? path.substring(dot + 1).toLowerCase(Locale.ROOT) : "";
+        return CONTENT_TYPES.getOrDefault(extension, "application/octet-stream");
+    }
+    
+    private static boolean isCompressible(String contentType) {
+        return contentType.startsWith("text/") || contentType.startsWith("application/javascript")
+            || contentType.startsWith("application/json") || contentType.startsWith("image/svg+xml");
+    }
+    
+    private static byte[] gzip(byte[] content) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(content.length / 2);
+        // 起動時に1回だけ圧縮するので最大圧縮率を使う
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            gzip.write(content);
+        }
+        return out.toByteArray();
+    }
+    
+    private static String hash(byte[] content) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(content);
+            StringBuilder hex = new StringBuilder();
+            for (int i = 0; i < 8; i++) {
+                hex.append(String.format("%02x", digest[i]));
+            }
+            return hex.toString();
+        } catch (Exception e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+    
+    public static final class Asset {
+        private final byte[] content;
+        private final byte[] gzip;
+        private final byte[] brotli;
+        private final String contentType;
+        private final String hash;
+        private final long lastModified;
+        private final boolean immutable;
+        
+        Asset(byte[] content, byte[] gzip, byte[] brotli, String contentType, String hash, long lastModified, boolean immutable) {
+            this.content = content;
+            this.gzip = gzip;
+            this.brotli = brotli;
+            this.contentType = contentType;
+            this.hash = hash;
+            this.lastModified = lastModified;
+            this.immutable = immutable;
+        }
+        
+        public byte[] getContent() {
+            return content;
+        }
+        
+        public byte[] getGzip() {
+            return gzip;
+        }
+        
+        public byte[] getBrotli() {
+            return brotli;
+        }
+        
+        public String getContentType() {
+            return contentType;
+        }
+        
+        // 元ファイルの内容ハッシュ（ETagは圧縮形式ごとに区別する）
+        public String getHash() {
+            return hash;
+        }
+        
+        public long getLastModified() {
+            return lastModified;
+        }
+        
+        // ハッシュ付きの名前で参照された場合（内容が変わると名前も変わる）
+        public boolean isImmutable() {
+            return immutable;
+        }
+    }
+}
@@ -1,26 +1,107 @@
 package app.handlers;
 
+import org.glassfish.grizzly.http.Method;
 import org.glassfish.grizzly.http.server.HttpHandler;
 import org.glassfish.grizzly.http.server.Request;
 import org.glassfish.grizzly.http.server.Response;
-import org.glassfish.grizzly.http.server.StaticHttpHandler;
+import org.glassfish.grizzly.http.util.HttpStatus;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+
 public class StaticHandler extends HttpHandler {
     private static final Logger logger = LoggerFactory.getLogger(StaticHandler.class);
     
-    private final StaticHttpHandler staticHttpHandler;
+    private final StaticAssets assets;
     
-    public StaticHandler(String docRoot) {
-        this.staticHttpHandler = new StaticHttpHandler(docRoot);
+    // 通常はクラスパスの web/ から、開発モード（dev.mode）ではディスク上の docRoot から読み込んで変更を監視する
+    public StaticHandler(String docRoot) throws IOException {
+        if (Boolean.getBoolean("dev.mode")) {
+            this.assets = StaticAssets.fromDirectory(docRoot);
+            this.assets.watch();
+        } else {
+            this.assets = StaticAssets.fromClasspath("web");
+        }
     }
     
     @Override
     public void service(Request request, Response response) throws Exception {
         logger.debug("Static file request: {}", request.getRequestURI());
         
-        // 静的ファイルを配信
-        staticHttpHandler.service(request, response);
+        Method method = request.getMethod();
+        if (method != Method.GET && method != Method.HEAD) {
+            response.setStatus(HttpStatus.METHOD_NOT_ALLOWED_405);
+            response.setHeader("Allow", "GET, HEAD");
+            return;
+        }
+        
+        String path = request.getDecodedRequestURI();
+        if (path.endsWith("/")) {
+            path = path + "index.html";
+        }
+        
+        StaticAssets.Asset asset = assets.get(path);
+        if (asset == null) {
+            response.setStatus(HttpStatus.NOT_FOUND_404);
+            return;
+        }
+        
+        // クライアントが受け付ける圧縮形式を選ぶ（br > gzip > 無圧縮）
+        String acceptEncoding = request.getHeader("Accept-Encoding");
+        byte[] body = asset.getContent();
+        String encoding = null;
+        if (asset.getBrotli() != null && ResponseCompressor.accepts(acceptEncoding, "br")) {
+            body = asset.getBrotli();
+            encoding = "br";
+        } else if (asset.getGzip() != null && ResponseCompressor.accepts(acceptEncoding, "gzip")) {
+            body = asset.getGzip();
+            encoding = "gzip";
+        }
+        
+        // 強いETagはバイト列ごとに異なる必要があるため圧縮形式を含める
+        String etag = "\"" + asset.getHash() + (encoding != null ? "-" + encoding : "") + "\"";
+        response.setHeader("ETag", etag);
+        response.setDateHeader("Last-Modified", asset.getLastModified());
+        // ハッシュ付きの名前は内容が変わらないため再検証させない。それ以外は毎回再検証させる
+        response.setHeader("Cache-Control", asset.isImmutable() ? "public, max-age=31536000, immutable" : "no-cache");
+        if (asset.getGzip() != null || asset.getBrotli() != null) {
+            response.setHeader("Vary", "Accept-Encoding");
+        }
+        
+        if (isNotModified(request, etag, asset.getLastModified())) {
+            response.setStatus(HttpStatus.NOT_MODIFIED_304);
+            return;
+        }
+        
+        response.setContentType(asset.getContentType());
+        if (encoding != null) {
+            response.setHeader("Content-Encoding", encoding);
+        }
+        response.setContentLength(body.length);
+        if (method == Method.GET) {
+            response.getOutputStream().write(body);
+        }
+    }
+    
+    public StaticAssets getAssets() {
+        return assets;
+    }
+    
+    // If-None-Match を優先し、無い場合のみ If-Modified-Since を見る
+    private static boolean isNotModified(Request request, String etag, long lastModified) {
+        String ifNoneMatch = request.getHeader("If-None-Match");
+        if (ifNoneMatch != null) {
+            for (String candidate : ifNoneMatch.split(",")) {
+                String value = candidate.trim();
+                if (value.equals("*") || value.equals(etag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        
+        long ifModifiedSince = request.getDateHeader("If-Modified-Since");
+        return ifModifiedSince != -1 && lastModified <= ifModifiedSince;
     }
 }
@@ -0,0 +1,89 @@
+package app.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.AsyncAppenderBase;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// 実行中のlogbackの操作（ログレベルの変更、非同期キュー・抑制件数の取得、終了時の書き出し）
+public class LogControl {
+    private final LoggerContext context;
+    
+    public LogControl() {
+        this.context = (LoggerContext) LoggerFactory.getILoggerFactory();
+    }
+    
+    // レベルが明示的に設定されているロガー（ROOTを含む）
+    public List<Map<String, String>> getConfiguredLevels() {
+        List<Map<String, String>> loggers = new ArrayList<>();
+        for (Logger logger : context.getLoggerList()) {
+            if (logger.getLevel() != null) {
+                loggers.add(describe(logger));
+            }
+        }
+        return loggers;
+    }
+    
+    // level が null の場合は設定を外して親のレベルに従わせる（ROOTは外せない）
+    public Map<String, String> setLevel(String loggerName, String level) {
+        Level parsed = null;
+        if (level != null) {
+            parsed = Level.toLevel(level, null);
+            if (parsed == null) {
+                throw new IllegalArgumentException("Unknown level: " + level);
+            }
+        } else if (Logger.ROOT_LOGGER_NAME.equalsIgnoreCase(loggerName)) {
+            throw new IllegalArgumentException("Root logger level cannot be cleared");
+        }
+        
+        Logger logger = context.getLogger(loggerName);
+        logger.setLevel(parsed);
+        return describe(logger);
+    }
+    
+    public long getSuppressedEvents() {
+        long suppressed = 0;
+        for (TurboFilter filter : context.getTurboFilterList()) {
+            if (filter instanceof RateLimitingTurboFilter) {
+                suppressed += ((RateLimitingTurboFilter) filter).getSuppressed();
+            }
+        }
+        return suppressed;
+    }
+    
+    // ROOTに付いている非同期アペンダーのキューに溜まっているイベント数
+    public long getQueuedEvents() {
+        long queued = 0;
+        Iterator<Appender<ILoggingEvent>> appenders = context.getLogger(Logger.ROOT_LOGGER_NAME).iteratorForAppenders();
+        while (appenders.hasNext()) {
+            Appender<ILoggingEvent> appender = appenders.next();
+            if (appender instanceof AsyncAppenderBase) {
+                queued += ((AsyncAppenderBase<ILoggingEvent>) appender).getNumberOfElementsInQueue();
+            }
+        }
+        return queued;
+    }
+    
+    // 非同期キューに残っているイベントを書き出してから停止する（シャットダウン時の最後に呼ぶ）
+    public void stop() {
+        context.stop();
+    }
+    
+    private static Map<String, String> describe(Logger logger) {
+        Map<String, String> description = new LinkedHashMap<>();
+        description.put("name", logger.getName());
+        description.put("level", logger.getLevel() != null ? logger.getLevel().toString() : null);
+        description.put("effectiveLevel", logger.getEffectiveLevel().toString());
+        return description;
+    }
+}
@@ -0,0 +1,88 @@
+package app.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.Marker;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// リクエストごとに出るログを、ロガーごとに1秒あたり maxPerSecond 件までに抑える（logback.xml の turboFilter で設定）
+// 対象は loggerName に指定したロガーとその子で、maxLevel 以下（既定 INFO）のイベントだけ。WARN / ERROR は常に通す
+public class RateLimitingTurboFilter extends TurboFilter {
+    private static final long WINDOW_NANOS = 1_000_000_000L;
+    // 対象外のロガー
+    private static final Window UNLIMITED = new Window();
+    
+    private final Set<String> loggerNames = new HashSet<>();
+    private Level maxLevel = Level.INFO;
+    private int maxPerSecond = 20;
+    
+    // ロガー名 → そのロガーが属する対象の窓（子ロガーは親と同じ窓を共有する）
+    private final ConcurrentHashMap<String, Window> windowsByLogger = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Window> windows = new ConcurrentHashMap<>();
+    private final LongAdder suppressed = new LongAdder();
+    
+    public void addLoggerName(String loggerName) {
+        loggerNames.add(loggerName.trim());
+    }
+    
+    public void setMaxLevel(String maxLevel) {
+        this.maxLevel = Level.toLevel(maxLevel, Level.INFO);
+    }
+    
+    public void setMaxPerSecond(int maxPerSecond) {
+        this.maxPerSecond = maxPerSecond;
+    }
+    
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+        // 出力されないイベント（無効なレベル）では窓を消費しない
+        if (level == null || level.levelInt > maxLevel.levelInt || !level.isGreaterOrEqual(logger.getEffectiveLevel())) {
+            return FilterReply.NEUTRAL;
+        }
+        
+        Window window = windowsByLogger.computeIfAbsent(logger.getName(), this::findWindow);
+        if (window == UNLIMITED || window.tryAcquire(System.nanoTime(), maxPerSecond)) {
+            return FilterReply.NEUTRAL;
+        }
+        suppressed.increment();
+        return FilterReply.DENY;
+    }
+    
+    // 抑制したイベントの累計
+    public long getSuppressed() {
+        return suppressed.sum();
+    }
+    
+    private Window findWindow(String name) {
+        for (String candidate = name; ; candidate = candidate.substring(0, candidate.lastIndexOf('.'))) {
+            if (loggerNames.contains(candidate)) {
+                return windows.computeIfAbsent(candidate, key -> new Window());
+            }
+            if (candidate.indexOf('.') < 0) {
+                return UNLIMITED;
+            }
+        }
+    }
+    
+    // 1秒ごとの固定窓（窓の切り替わりで多少ずれても構わない）
+    private static final class Window {
+        private final AtomicLong start = new AtomicLong(System.nanoTime());
+        private final AtomicInteger count = new AtomicInteger();
+        
+        boolean tryAcquire(long now, int limit) {
+            long current = start.get();
+            if (now - current >= WINDOW_NANOS && start.compareAndSet(current, now)) {
+                count.set(0);
+            }
+            return count.incrementAndGet() <= limit;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package app.metrics;
+
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.LongAdder;
+
+// 固定バケットの分布（Prometheus の histogram 形式で出力する）
+// 記録はバケットの探索と LongAdder の加算だけで、オブジェクトを確保しない
+public final class Histogram {
+    // le ラベルの値（指数表記にしない）
+    private final String[] boundLabels;
+    private final long[] boundsNanos;
+    // 各バケットの件数（累積ではない。最後の要素は +Inf）
+    private final LongAdder[] buckets;
+    private final LongAdder sumNanos = new LongAdder();
+    
+    // bounds: バケットの上限（秒、昇順）
+    public Histogram(double... bounds) {
+        this.boundLabels = new String[bounds.length];
+        this.boundsNanos = new long[bounds.length];
+        this.buckets = new LongAdder[bounds.length + 1];
+        for (int i = 0; i < bounds.length; i++) {
+            if (i > 0 && bounds[i] <= bounds[i - 1]) {
+                throw new IllegalArgumentException("Histogram bounds must be increasing");
+            }
+            boundsNanos[i] = (long) (bounds[i] * 1_000_000_000L);
+            boundLabels[i] = BigDecimal.valueOf(bounds[i]).stripTrailingZeros().toPlainString();
+        }
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+    
+    // HTTPリクエストのレイテンシ用（0.5ms〜10s）
+    public static Histogram forRequests() {
+        return new Histogram(0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10);
+    }
+    
+    // 接続プールの待ち時間など、通常はごく短い処理用（10µs〜1s）
+    public static Histogram forWaits() {
+        return new Histogram(0.00001, 0.00005, 0.0001, 0.0005, 0.001, 0.005, 0.01, 0.05, 0.1, 0.5, 1);
+    }
+    
+    public void record(long nanos) {
+        // バケット数は十数個なので線形探索で十分（上限ちょうどの値はそのバケットに入る）
+        int i = 0;
+        while (i < boundsNanos.length && nanos > boundsNanos[i]) {
+            i++;
+        }
+        buckets[i].increment();
+        sumNanos.add(nanos);
+    }
+    
+    public long getCount() {
+        long count = 0;
+        for (LongAdder bucket : buckets) {
+            count += bucket.sum();
+        }
+        return count;
+    }
+    
+    // labels は `route="/api/posts",method="GET"` の形式（無ければ空文字）
+    void write(StringBuilder out, String name, String labels) {
+        String prefix = labels.isEmpty() ? "" : labels + ",";
+        long cumulative = 0;
+        for (int i = 0; i < boundLabels.length; i++) {
+            cumulative += buckets[i].sum();
+            out.append(name).append("_bucket{").append(prefix).append("le=\"").append(boundLabels[i]).append("\"} ")
+                .append(cumulative).append('\n');
+        }
+        cumulative += buckets[boundLabels.length].sum();
+        out.append(name).append("_bucket{").append(prefix).append("le=\"+Inf\"} ").append(cumulative).append('\n');
+        
+        String suffix = labels.isEmpty() ? " " : "{" + labels + "} ";
+        out.append(name).append("_sum").append(suffix).append(sumNanos.sum() / 1e9).append('\n');
+        out.append(name).append("_count").append(suffix).append(cumulative).append('\n');
+    }
+}
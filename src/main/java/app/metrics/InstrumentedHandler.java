@@ -0,0 +1,66 @@
+package app.metrics;
+
+import org.glassfish.grizzly.http.server.HttpHandler;
+import org.glassfish.grizzly.http.server.Request;
+import org.glassfish.grizzly.http.server.Response;
+
+// HttpHandler を包んでリクエスト数・ステータス・レイテンシを記録する
+// あわせてフェーズごとの時間を計り、Server-Timing ヘッダーと低速リクエストログに出す
+public class InstrumentedHandler extends HttpHandler {
+    private final RouteMetrics metrics;
+    private final HttpHandler delegate;
+    private final boolean serverTiming;
+    private final SlowRequestLog slowLog;
+    
+    InstrumentedHandler(RouteMetrics metrics, HttpHandler delegate, boolean serverTiming, SlowRequestLog slowLog) {
+        this.metrics = metrics;
+        this.delegate = delegate;
+        this.serverTiming = serverTiming;
+        this.slowLog = slowLog;
+    }
+    
+    @Override
+    public void service(Request request, Response response) throws Exception {
+        RequestTiming timing = RequestTiming.begin();
+        boolean failed = true;
+        try {
+            delegate.service(request, response);
+            failed = false;
+        } finally {
+            long elapsed = timing.end();
+            if (failed) {
+                // 例外はGrizzlyが 500 として返す
+                metrics.record(request.getMethod(), 500, elapsed);
+                slowLog.check(request, 500, elapsed, timing.getPhaseNanos(), timing.getRedisCommands());
+            } else if (response.isSuspended()) {
+                // 保留したレスポンス（パスワードハッシュ待ち・SSE）は応答の完了時に記録する
+                // この場合だけリスナーと計測のコピーを確保する（ハッシュ計算に比べれば無視できる）
+                long start = timing.getStart();
+                RequestTiming.Snapshot snapshot = timing.snapshot();
+                request.addAfterServiceListener(completed -> complete(completed, start, snapshot));
+            } else {
+                int status = response.getStatus();
+                // 本文が大きく送信が始まっている場合はヘッダーを追加できない（低速ログには残る）
+                if (serverTiming && !response.isCommitted()) {
+                    response.setHeader("Server-Timing", RequestTiming.serverTiming(timing.getPhaseNanos(), elapsed));
+                }
+                metrics.record(request.getMethod(), status, elapsed);
+                slowLog.check(request, status, elapsed, timing.getPhaseNanos(), timing.getRedisCommands());
+            }
+        }
+    }
+    
+    private void complete(Request request, long start, RequestTiming.Snapshot snapshot) {
+        Response response = request.getResponse();
+        String contentType = response.getContentType();
+        // SSEの接続時間はレイテンシではないため、件数だけを数える
+        if (contentType != null && contentType.startsWith("text/event-stream")) {
+            metrics.record(request.getMethod(), response.getStatus(), -1);
+            return;
+        }
+        
+        long elapsed = System.nanoTime() - start;
+        metrics.record(request.getMethod(), response.getStatus(), elapsed);
+        slowLog.check(request, response.getStatus(), elapsed, snapshot.phaseNanos, snapshot.redisCommands);
+    }
+}
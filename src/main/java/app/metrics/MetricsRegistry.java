@@ -0,0 +1,97 @@
+package app.metrics;
+
+import org.glassfish.grizzly.http.server.HttpHandler;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.DoubleSupplier;
+
+// メトリクスの登録先。値は各コンポーネントが保持し、ここでは出力時に読み出す（Prometheus のテキスト形式）
+public class MetricsRegistry {
+    private static final String REQUESTS = "http_requests_total";
+    private static final String REQUEST_DURATION = "http_request_duration_seconds";
+    
+    private final List<RouteMetrics> routes = new CopyOnWriteArrayList<>();
+    private final List<Metric> metrics = new CopyOnWriteArrayList<>();
+    private final boolean serverTiming;
+    private final SlowRequestLog slowLog;
+    
+    public MetricsRegistry() {
+        this.serverTiming = Boolean.parseBoolean(System.getenv().getOrDefault("SERVER_TIMING", "true"));
+        this.slowLog = new SlowRequestLog(Long.parseLong(System.getenv().getOrDefault("SLOW_REQUEST_THRESHOLD_MS", "500")));
+        counter("http_slow_requests_total", "Requests slower than SLOW_REQUEST_THRESHOLD_MS", slowLog::getSlowRequests);
+    }
+    
+    // handler を計測付きで包む（route はラベルに使う登録パス）
+    public HttpHandler instrument(String route, HttpHandler handler) {
+        RouteMetrics routeMetrics = new RouteMetrics(route);
+        routes.add(routeMetrics);
+        return new InstrumentedHandler(routeMetrics, handler, serverTiming, slowLog);
+    }
+    
+    // 単調増加する値
+    public void counter(String name, String help, DoubleSupplier value) {
+        metrics.add(new Metric(name, "counter", help, value, null));
+    }
+    
+    // 増減する現在値
+    public void gauge(String name, String help, DoubleSupplier value) {
+        metrics.add(new Metric(name, "gauge", help, value, null));
+    }
+    
+    public void histogram(String name, String help, Histogram histogram) {
+        metrics.add(new Metric(name, "histogram", help, null, histogram));
+    }
+    
+    public String scrape() {
+        StringBuilder out = new StringBuilder(8192);
+        
+        writeHeader(out, REQUESTS, "counter", "HTTP requests by route, method and status class");
+        for (RouteMetrics route : routes) {
+            route.writeResponses(out, REQUESTS);
+        }
+        writeHeader(out, REQUEST_DURATION, "histogram", "HTTP request latency by route and method (excluding event streams)");
+        for (RouteMetrics route : routes) {
+            route.writeLatencies(out, REQUEST_DURATION);
+        }
+        
+        for (Metric metric : metrics) {
+            writeHeader(out, metric.name, metric.type, metric.help);
+            if (metric.histogram != null) {
+                metric.histogram.write(out, metric.name, "");
+            } else {
+                out.append(metric.name).append(' ').append(format(metric.value.getAsDouble())).append('\n');
+            }
+        }
+        return out.toString();
+    }
+    
+    private static void writeHeader(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+    
+    // 整数値は小数点なしで出力する
+    private static String format(double value) {
+        if (value == Math.rint(value) && !Double.isInfinite(value) && Math.abs(value) < 1e15) {
+            return String.valueOf((long) value);
+        }
+        return String.valueOf(value);
+    }
+    
+    private static final class Metric {
+        private final String name;
+        private final String type;
+        private final String help;
+        private final DoubleSupplier value;
+        private final Histogram histogram;
+        
+        Metric(String name, String type, String help, DoubleSupplier value, Histogram histogram) {
+            this.name = name;
+            this.type = type;
+            this.help = help;
+            this.value = value;
+            this.histogram = histogram;
+        }
+    }
+}
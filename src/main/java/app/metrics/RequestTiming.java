@@ -0,0 +1,192 @@
+package app.metrics;
+
+import java.util.Locale;
+
+// リクエスト処理中のフェーズごとの所要時間（ワーカースレッドごとに1つを使い回す）
+// フェーズは入れ子にでき、内側のフェーズの時間は外側に含めない（serialize 中の Redis 読み出しは redis に数える）
+// 閉じるときは閉じるフェーズを指定する。Redis の接続のように入れ子にならない区間（serialize の外で借りて中で返す）でも
+// そのフェーズだけを外すため、ほかのフェーズの時間を取り違えない
+// 計測は InstrumentedHandler の service() の間だけ有効で、それ以外のスレッド・時間帯では何もしない
+public final class RequestTiming {
+    public enum Phase {
+        AUTH("auth"),
+        REDIS("redis"),
+        SERIALIZE("serialize"),
+        WRITE("write");
+        
+        private final String label;
+        
+        Phase(String label) {
+            this.label = label;
+        }
+        
+        public String getLabel() {
+            return label;
+        }
+    }
+    
+    private static final Phase[] PHASES = Phase.values();
+    // これより深い入れ子は外側のフェーズとして数える
+    private static final int MAX_DEPTH = 8;
+    private static final ThreadLocal<RequestTiming> CURRENT = ThreadLocal.withInitial(RequestTiming::new);
+    
+    private final long[] phaseNanos = new long[PHASES.length];
+    private final Phase[] stack = new Phase[MAX_DEPTH];
+    private boolean active;
+    private int depth;
+    private long start;
+    private long mark;
+    private int redisCommands;
+    
+    private RequestTiming() {
+    }
+    
+    // フェーズを開始する（同じフェーズの exit(phase) と対にして try / finally で呼ぶ）
+    public static void enter(Phase phase) {
+        RequestTiming timing = CURRENT.get();
+        if (timing.active) {
+            timing.push(phase);
+        }
+    }
+    
+    // 最も内側の同じフェーズを閉じる（開いていないフェーズは無視する）
+    public static void exit(Phase phase) {
+        RequestTiming timing = CURRENT.get();
+        if (timing.active && timing.depth > 0) {
+            timing.pop(phase);
+        }
+    }
+    
+    public static void countRedisCommand() {
+        RequestTiming timing = CURRENT.get();
+        if (timing.active) {
+            timing.redisCommands++;
+        }
+    }
+    
+    static RequestTiming begin() {
+        RequestTiming timing = CURRENT.get();
+        timing.start = System.nanoTime();
+        timing.mark = timing.start;
+        timing.depth = 0;
+        timing.redisCommands = 0;
+        for (int i = 0; i < timing.phaseNanos.length; i++) {
+            timing.phaseNanos[i] = 0;
+        }
+        timing.active = true;
+        return timing;
+    }
+    
+    // 計測を終えて開始からの経過時間を返す（閉じられていないフェーズはここまでで打ち切る）
+    long end() {
+        long now = System.nanoTime();
+        accumulate(now);
+        depth = 0;
+        active = false;
+        return now - start;
+    }
+    
+    long getStart() {
+        return start;
+    }
+    
+    // 次の begin() で上書きされるので、その場で読むこと
+    long[] getPhaseNanos() {
+        return phaseNanos;
+    }
+    
+    int getRedisCommands() {
+        return redisCommands;
+    }
+    
+    // 保留したレスポンスの完了時に使う（スレッドの計測は次のリクエストで上書きされるため）
+    Snapshot snapshot() {
+        return new Snapshot(phaseNanos.clone(), redisCommands);
+    }
+    
+    private void push(Phase phase) {
+        accumulate(System.nanoTime());
+        if (depth < MAX_DEPTH) {
+            stack[depth] = phase;
+        }
+        depth++;
+    }
+    
+    private void pop(Phase phase) {
+        // MAX_DEPTH を超えた分は記録していないため、外側のフェーズとして数えたまま閉じる
+        if (depth > MAX_DEPTH) {
+            accumulate(System.nanoTime());
+            depth--;
+            return;
+        }
+        int index = depth - 1;
+        while (index >= 0 && stack[index] != phase) {
+            index--;
+        }
+        if (index < 0) {
+            return;
+        }
+        
+        accumulate(System.nanoTime());
+        // 内側に開いているフェーズは残し、閉じたフェーズだけを詰める
+        System.arraycopy(stack, index + 1, stack, index, depth - index - 1);
+        depth--;
+    }
+    
+    private void accumulate(long now) {
+        if (depth > 0) {
+            phaseNanos[stack[Math.min(depth, MAX_DEPTH) - 1].ordinal()] += now - mark;
+        }
+        mark = now;
+    }
+    
+    // Server-Timing ヘッダーの値（例: auth;dur=0.12, redis;dur=1.50, app;dur=0.40, total;dur=2.02）
+    static String serverTiming(long[] phaseNanos, long totalNanos) {
+        StringBuilder value = new StringBuilder(96);
+        long other = totalNanos;
+        for (Phase phase : PHASES) {
+            long nanos = phaseNanos[phase.ordinal()];
+            if (nanos > 0) {
+                appendDuration(value, phase.label, nanos);
+                other -= nanos;
+            }
+        }
+        appendDuration(value, "app", Math.max(other, 0));
+        appendDuration(value, "total", totalNanos);
+        return value.toString();
+    }
+    
+    // 低速リクエストログ用（例: auth=0.12ms redis=1.50ms app=0.40ms redisCommands=3）
+    static String breakdown(long[] phaseNanos, long totalNanos, int redisCommands) {
+        StringBuilder value = new StringBuilder(96);
+        long other = totalNanos;
+        for (Phase phase : PHASES) {
+            long nanos = phaseNanos[phase.ordinal()];
+            value.append(phase.label).append('=').append(millis(nanos)).append("ms ");
+            other -= nanos;
+        }
+        value.append("app=").append(millis(Math.max(other, 0))).append("ms redisCommands=").append(redisCommands);
+        return value.toString();
+    }
+    
+    private static void appendDuration(StringBuilder value, String name, long nanos) {
+        if (value.length() > 0) {
+            value.append(", ");
+        }
+        value.append(name).append(";dur=").append(millis(nanos));
+    }
+    
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.2f", nanos / 1e6);
+    }
+    
+    static final class Snapshot {
+        final long[] phaseNanos;
+        final int redisCommands;
+        
+        Snapshot(long[] phaseNanos, int redisCommands) {
+            this.phaseNanos = phaseNanos;
+            this.redisCommands = redisCommands;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package app.metrics;
+
+import org.glassfish.grizzly.http.Method;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// ルート（HttpHandler の登録パス）ごとの、メソッド別のリクエスト数・ステータス・レイテンシ
+// 記録先は登録時に全て用意しておき、記録時は配列の添字で引く
+public final class RouteMetrics {
+    private static final Method[] METHODS = {Method.GET, Method.HEAD, Method.POST, Method.PUT, Method.DELETE};
+    private static final String[] METHOD_LABELS = {"GET", "HEAD", "POST", "PUT", "DELETE", "OTHER"};
+    private static final String[] STATUS_LABELS = {"1xx", "2xx", "3xx", "4xx", "5xx"};
+    
+    private final String route;
+    private final Histogram[] latencies = new Histogram[METHOD_LABELS.length];
+    // [メソッド][ステータスの百の位 - 1]
+    private final LongAdder[][] responses = new LongAdder[METHOD_LABELS.length][STATUS_LABELS.length];
+    
+    RouteMetrics(String route) {
+        this.route = route;
+        for (int m = 0; m < METHOD_LABELS.length; m++) {
+            latencies[m] = Histogram.forRequests();
+            for (int s = 0; s < STATUS_LABELS.length; s++) {
+                responses[m][s] = new LongAdder();
+            }
+        }
+    }
+    
+    public String getRoute() {
+        return route;
+    }
+    
+    // nanos が負の場合は件数だけを数える（SSEのような長時間の接続）
+    public void record(Method method, int status, long nanos) {
+        int m = methodIndex(method);
+        int s = Math.min(Math.max(status / 100, 1), 5) - 1;
+        responses[m][s].increment();
+        if (nanos >= 0) {
+            latencies[m].record(nanos);
+        }
+    }
+    
+    void writeResponses(StringBuilder out, String name) {
+        for (int m = 0; m < METHOD_LABELS.length; m++) {
+            for (int s = 0; s < STATUS_LABELS.length; s++) {
+                long count = responses[m][s].sum();
+                if (count > 0) {
+                    out.append(name).append("{route=\"").append(route).append("\",method=\"").append(METHOD_LABELS[m])
+                        .append("\",status=\"").append(STATUS_LABELS[s]).append("\"} ").append(count).append('\n');
+                }
+            }
+        }
+    }
+    
+    void writeLatencies(StringBuilder out, String name) {
+        for (int m = 0; m < METHOD_LABELS.length; m++) {
+            if (latencies[m].getCount() > 0) {
+                latencies[m].write(out, name, "route=\"" + route + "\",method=\"" + METHOD_LABELS[m] + "\"");
+            }
+        }
+    }
+    
+    private static int methodIndex(Method method) {
+        for (int i = 0; i < METHODS.length; i++) {
+            if (METHODS[i] == method) {
+                return i;
+            }
+        }
+        return METHODS.length;
+    }
+}
@@ -0,0 +1,37 @@
+package app.metrics;
+
+import org.glassfish.grizzly.http.server.Request;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+// しきい値を超えたリクエストをフェーズの内訳付きで専用のログ（logback.xml の slow-requests）に出力する
+final class SlowRequestLog {
+    private static final Logger logger = LoggerFactory.getLogger("slow-requests");
+    
+    private final long thresholdNanos;
+    private final LongAdder slowRequests = new LongAdder();
+    
+    // thresholdMs が負の場合は出力しない
+    SlowRequestLog(long thresholdMs) {
+        this.thresholdNanos = thresholdMs < 0 ? Long.MAX_VALUE : thresholdMs * 1_000_000L;
+    }
+    
+    void check(Request request, int status, long totalNanos, long[] phaseNanos, int redisCommands) {
+        if (totalNanos < thresholdNanos) {
+            return;
+        }
+        
+        slowRequests.increment();
+        String query = request.getQueryString();
+        logger.warn("{} {}{} {} {}ms {}", request.getMethod().getMethodString(), request.getRequestURI(),
+            query != null ? "?" + query : "", status, String.format(Locale.ROOT, "%.2f", totalNanos / 1e6),
+            RequestTiming.breakdown(phaseNanos, totalNanos, redisCommands));
+    }
+    
+    long getSlowRequests() {
+        return slowRequests.sum();
+    }
+}
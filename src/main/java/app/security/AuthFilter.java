@@ -1,5 +1,6 @@
 package app.security;
 
+import app.metrics.RequestTiming;
 import org.glassfish.grizzly.http.server.HttpHandler;
 import org.glassfish.grizzly.http.server.Request;
 import org.glassfish.grizzly.http.server.Response;
@@ -21,7 +22,8 @@ public class AuthFilter extends HttpHandler {
         "/api/auth/signup",
         "/api/auth/signin",
         "/api/auth/refresh",
-        "/api/posts" // GET /api/posts は公開
+        "/api/posts", // GET /api/posts は公開
+        "/api/posts/stream" // GET /api/posts/stream（SSE）も公開
     );
     
     public AuthFilter(JwtService jwtService, HttpHandler nextHandler) {
@@ -57,7 +59,13 @@ public class AuthFilter extends HttpHandler {
         
         try {
             // アクセストークンを検証
-            Claims claims = jwtService.verifyAccess(token);
+            Claims claims;
+            RequestTiming.enter(RequestTiming.Phase.AUTH);
+            try {
+                claims = jwtService.verifyAccess(token);
+            } finally {
+                RequestTiming.exit(RequestTiming.Phase.AUTH);
+            }
             
             // リクエストに認証情報を設定
             request.setAttribute("auth", claims);
@@ -85,8 +93,8 @@ public class AuthFilter extends HttpHandler {
             return true;
         }
         
-        // GET /api/posts は公開
-        if ("GET".equals(method) && "/api/posts".equals(path)) {
+        // GET /api/posts と GET /api/posts/stream は公開
+        if ("GET".equals(method) && ("/api/posts".equals(path) || "/api/posts/stream".equals(path))) {
             return true;
         }
         
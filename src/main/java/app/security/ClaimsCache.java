@@ -0,0 +1,127 @@
+package app.security;
+
+import io.jsonwebtoken.Claims;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+// 検証済みアクセストークンのキャッシュ（キーはトークンのSHA-256、有効期限まで保持）
+// 読み出しはロックなし。上限を超えたら1スレッドだけが期限切れと最終アクセスの古いものをまとめて削除する（近似LRU）
+public class ClaimsCache {
+    // 上限を超えたときに、この割合まで減らす（追加のたびに削除が走らないように）
+    private static final double EVICT_TO = 0.9;
+    
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    });
+    
+    private final int maxSize;
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    
+    public ClaimsCache(int maxSize) {
+        this.maxSize = maxSize;
+    }
+    
+    public Claims get(String token) {
+        if (maxSize <= 0) {
+            return null;
+        }
+        
+        String key = hash(token);
+        Entry entry = entries.get(key);
+        if (entry != null && entry.expiresAt > System.currentTimeMillis()) {
+            entry.lastAccess = System.nanoTime();
+            hits.increment();
+            return entry.claims;
+        }
+        if (entry != null) {
+            entries.remove(key, entry);
+        }
+        misses.increment();
+        return null;
+    }
+    
+    public void put(String token, Claims claims) {
+        if (maxSize <= 0 || claims.getExpiration() == null) {
+            return;
+        }
+        
+        // パーサーが期限切れとして拒否する時刻（exp）まで有効
+        Entry entry = new Entry(claims, claims.getExpiration().getTime());
+        entries.put(hash(token), entry);
+        // 削除中に他のスレッドが追加した分は、削除したスレッドがフラグを戻した後に確認して片付ける
+        while (entries.size() > maxSize && evicting.compareAndSet(false, true)) {
+            try {
+                evict();
+            } finally {
+                evicting.set(false);
+            }
+        }
+    }
+    
+    public int size() {
+        return entries.size();
+    }
+    
+    public long getHits() {
+        return hits.sum();
+    }
+    
+    public long getMisses() {
+        return misses.sum();
+    }
+    
+    public double getHitRate() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? 0.0 : (double) h / total;
+    }
+    
+    // 同時に1スレッドだけ実行する（evicting を取ったスレッドから呼ぶ）
+    private void evict() {
+        long now = System.currentTimeMillis();
+        entries.values().removeIf(entry -> entry.expiresAt <= now);
+        
+        if (entries.size() <= maxSize) {
+            return;
+        }
+        // 最終アクセスが古い順に excess 件目の時刻以前を削除する（走査中の更新は多少ずれても構わない）
+        long[] accessed = entries.values().stream().mapToLong(entry -> entry.lastAccess).toArray();
+        int excess = accessed.length - (int) (maxSize * EVICT_TO);
+        if (excess <= 0) {
+            return;
+        }
+        Arrays.sort(accessed);
+        long cutoff = accessed[excess - 1];
+        entries.values().removeIf(entry -> entry.lastAccess <= cutoff);
+    }
+    
+    private static String hash(String token) {
+        byte[] digest = SHA256.get().digest(token.getBytes(StandardCharsets.UTF_8));
+        return Base64.getEncoder().encodeToString(digest);
+    }
+    
+    private static final class Entry {
+        private final Claims claims;
+        private final long expiresAt;
+        private volatile long lastAccess = System.nanoTime();
+        
+        Entry(Claims claims, long expiresAt) {
+            this.claims = claims;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -2,6 +2,7 @@ package app.security;
 
 import app.store.User;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
@@ -20,18 +21,33 @@ public class JwtService {
     private final SecretKey secretKey;
     private final int accessTokenTtlSec;
     private final int refreshTokenTtlSec;
+    // パーサーはスレッドセーフなので全リクエストで共有する
+    private final JwtParser parser;
+    private final ClaimsCache accessCache;
     
     public JwtService() {
-        String secret = System.getenv("JWT_HS256_SECRET");
+        this(requireSecret(System.getenv("JWT_HS256_SECRET")),
+            Integer.parseInt(System.getenv().getOrDefault("JWT_ACCESS_TTL_SEC", "600")), // 10分
+            Integer.parseInt(System.getenv().getOrDefault("JWT_REFRESH_TTL_SEC", "604800")), // 7日
+            Integer.parseInt(System.getenv().getOrDefault("JWT_CACHE_SIZE", "10000"))); // 0で無効
+    }
+    
+    // 環境変数を使わずに設定する場合（ベンチマークなど）
+    public JwtService(String secret, int accessTokenTtlSec, int refreshTokenTtlSec, int cacheSize) {
+        this.secretKey = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+        this.accessTokenTtlSec = accessTokenTtlSec;
+        this.refreshTokenTtlSec = refreshTokenTtlSec;
+        this.parser = Jwts.parserBuilder().setSigningKey(secretKey).build();
+        this.accessCache = new ClaimsCache(cacheSize);
+        
+        logger.info("JwtService initialized - Access TTL: {}s, Refresh TTL: {}s, Claims cache size: {}", accessTokenTtlSec, refreshTokenTtlSec, cacheSize);
+    }
+    
+    private static String requireSecret(String secret) {
         if (secret == null || secret.trim().isEmpty()) {
             throw new IllegalArgumentException("JWT_HS256_SECRET environment variable is required");
         }
-        
-        this.secretKey = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
-        this.accessTokenTtlSec = Integer.parseInt(System.getenv().getOrDefault("JWT_ACCESS_TTL_SEC", "600")); // 10分
-        this.refreshTokenTtlSec = Integer.parseInt(System.getenv().getOrDefault("JWT_REFRESH_TTL_SEC", "604800")); // 7日
-        
-        logger.info("JwtService initialized - Access TTL: {}s, Refresh TTL: {}s", accessTokenTtlSec, refreshTokenTtlSec);
+        return secret;
     }
     
     public String issueAccess(User user) {
@@ -77,12 +93,15 @@ public class JwtService {
     public Claims verifyAccess(String token) {
         logger.debug("Verifying access token");
         
+        // 同じトークンでの再検証は署名検証とJSON解析を省略する
+        Claims cached = token != null ? accessCache.get(token) : null;
+        if (cached != null) {
+            logger.debug("Access token verified from cache for subject: {}", cached.getSubject());
+            return cached;
+        }
+        
         try {
-            Claims claims = Jwts.parserBuilder()
-                    .setSigningKey(secretKey)
-                    .build()
-                    .parseClaimsJws(token)
-                    .getBody();
+            Claims claims = parser.parseClaimsJws(token).getBody();
             
             // 時刻ずれ許容（±60秒）
             Date now = new Date();
@@ -92,6 +111,7 @@ public class JwtService {
                 throw new RuntimeException("Token expired");
             }
             
+            accessCache.put(token, claims);
             logger.debug("Access token verified for subject: {}", claims.getSubject());
             return claims;
         } catch (Exception e) {
@@ -104,11 +124,7 @@ public class JwtService {
         logger.debug("Verifying refresh token");
         
         try {
-            Claims claims = Jwts.parserBuilder()
-                    .setSigningKey(secretKey)
-                    .build()
-                    .parseClaimsJws(token)
-                    .getBody();
+            Claims claims = parser.parseClaimsJws(token).getBody();
             
             // 時刻ずれ許容（±60秒）
             Date now = new Date();
@@ -133,4 +149,8 @@ public class JwtService {
     public int getRefreshTokenTtlSec() {
         return refreshTokenTtlSec;
     }
+    
+    public ClaimsCache getAccessCache() {
+        return accessCache;
+    }
 }
@@ -0,0 +1,68 @@
+package app.security;
+
+import org.mindrot.jbcrypt.BCrypt;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// bcryptはCPUを数十ミリ秒使うため、HTTPワーカーとは別の上限付きスレッドプールで実行する
+public class PasswordHasher {
+    private static final Logger logger = LoggerFactory.getLogger(PasswordHasher.class);
+    
+    private final int cost;
+    private final ThreadPoolExecutor executor;
+    
+    public PasswordHasher() {
+        this.cost = Integer.parseInt(System.getenv().getOrDefault("BCRYPT_COST", "10"));
+        int threads = Integer.parseInt(System.getenv().getOrDefault("BCRYPT_THREADS",
+            String.valueOf(Math.max(1, Runtime.getRuntime().availableProcessors() / 2))));
+        int queueSize = Integer.parseInt(System.getenv().getOrDefault("BCRYPT_QUEUE_SIZE", "64"));
+        
+        AtomicInteger threadCount = new AtomicInteger();
+        // キューが一杯の場合は RejectedExecutionException（呼び出し側で503を返す）
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueSize), r -> {
+                Thread thread = new Thread(r, "bcrypt-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }, new ThreadPoolExecutor.AbortPolicy());
+        
+        logger.info("PasswordHasher initialized - cost: {}, threads: {}, queue: {}", cost, threads, queueSize);
+    }
+    
+    public CompletableFuture<String> hash(String password) throws RejectedExecutionException {
+        return CompletableFuture.supplyAsync(() -> BCrypt.hashpw(password, BCrypt.gensalt(cost)), executor);
+    }
+    
+    public CompletableFuture<Boolean> verify(String password, String hash) throws RejectedExecutionException {
+        return CompletableFuture.supplyAsync(() -> BCrypt.checkpw(password, hash), executor);
+    }
+    
+    // 保存済みハッシュ（$2a$10$...）のコストが現在の設定と異なる場合は true
+    public boolean needsRehash(String hash) {
+        if (hash == null || hash.length() < 7 || hash.charAt(0) != '$') {
+            return false;
+        }
+        
+        try {
+            int offset = hash.charAt(3) == '$' ? 4 : 3;
+            return Integer.parseInt(hash.substring(offset, offset + 2)) != cost;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+    
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+    
+    public void close() {
+        executor.shutdownNow();
+    }
+}
@@ -1,32 +1,29 @@
 package app.security;
 
+import app.store.RefreshTokenRepo;
 import app.store.User;
 import app.store.UserRepo;
-import redis.clients.jedis.Jedis;
-import redis.clients.jedis.JedisPool;
 import io.jsonwebtoken.Claims;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Set;
-
 public class RefreshService {
     private static final Logger logger = LoggerFactory.getLogger(RefreshService.class);
     
     private final JwtService jwtService;
     private final UserRepo userRepo;
-    private final JedisPool jedisPool;
+    private final RefreshTokenRepo refreshTokenRepo;
     
-    public RefreshService(JwtService jwtService, UserRepo userRepo, JedisPool jedisPool) {
+    public RefreshService(JwtService jwtService, UserRepo userRepo, RefreshTokenRepo refreshTokenRepo) {
         this.jwtService = jwtService;
         this.userRepo = userRepo;
-        this.jedisPool = jedisPool;
+        this.refreshTokenRepo = refreshTokenRepo;
     }
     
     public RefreshResult rotate(String refreshToken) {
         logger.debug("Starting refresh token rotation");
         
-        try (Jedis jedis = jedisPool.getResource()) {
+        try {
             // リフレッシュトークンを検証
             Claims claims = jwtService.verifyRefresh(refreshToken);
             String jti = claims.getId();
@@ -34,15 +31,17 @@ public class RefreshService {
             
             logger.debug("Refresh token verified for user: {} with jti: {}", userId, jti);
             
-            // アクティブなリフレッシュトークンかチェック
-            String activeKey = "rt:active:" + jti;
-            String storedUserId = jedis.get(activeKey);
+            // 旧リフレッシュトークンを失効（ブラックリストに移動）
+            // 失効は原子的に1回だけ成功するため、その戻り値で有効性を判定する（同時に回転しても新しいペアは1組だけ発行される）
+            String storedUserId = refreshTokenRepo.revoke(jti, jwtService.getRefreshTokenTtlSec());
             
             if (storedUserId == null || !storedUserId.equals(userId)) {
                 logger.warn("Refresh token not found in active list or user mismatch: {}", jti);
                 throw new RuntimeException("Invalid refresh token");
             }
             
+            logger.debug("Old refresh token blacklisted: {}", jti);
+            
             // ユーザー情報を取得
             User user = userRepo.findById(userId);
             if (user == null) {
@@ -50,13 +49,6 @@ public class RefreshService {
                 throw new RuntimeException("User not found");
             }
             
-            // 旧リフレッシュトークンを失効（ブラックリストに移動）
-            String blackKey = "rt:black:" + jti;
-            jedis.setex(blackKey, jwtService.getRefreshTokenTtlSec(), "1");
-            jedis.del(activeKey);
-            
-            logger.debug("Old refresh token blacklisted: {}", jti);
-            
             // 新しいトークンペアを発行
             String newAccessToken = jwtService.issueAccess(user);
             String newRefreshToken = jwtService.issueRefresh(user);
@@ -66,35 +58,32 @@ public class RefreshService {
             String newJti = newRefreshClaims.getId();
             
             // 新しいリフレッシュトークンをアクティブリストに登録
-            String newActiveKey = "rt:active:" + newJti;
-            jedis.setex(newActiveKey, jwtService.getRefreshTokenTtlSec(), userId);
+            refreshTokenRepo.activate(newJti, userId, jwtService.getRefreshTokenTtlSec());
             
             logger.info("Refresh token rotated successfully for user: {}", userId);
             
             return new RefreshResult(newAccessToken, newRefreshToken, newJti);
-            
+        
         } catch (Exception e) {
             logger.error("Refresh token rotation failed", e);
             throw new RuntimeException("Refresh token rotation failed", e);
         }
     }
     
-    public JedisPool getJedisPool() {
-        return jedisPool;
+    // サインイン時に発行したリフレッシュトークンをアクティブリストに登録
+    public void activateRefreshToken(String refreshToken, String userId) {
+        String jti = jwtService.verifyRefresh(refreshToken).getId();
+        refreshTokenRepo.activate(jti, userId, jwtService.getRefreshTokenTtlSec());
+        logger.debug("Refresh token activated: {} for user: {}", jti, userId);
     }
     
     public void revokeRefreshToken(String jti) {
         logger.debug("Revoking refresh token: {}", jti);
         
-        try (Jedis jedis = jedisPool.getResource()) {
-            String activeKey = "rt:active:" + jti;
-            String blackKey = "rt:black:" + jti;
-            
+        try {
             // アクティブリストから削除してブラックリストに移動
-            String userId = jedis.get(activeKey);
+            String userId = refreshTokenRepo.revoke(jti, jwtService.getRefreshTokenTtlSec());
             if (userId != null) {
-                jedis.del(activeKey);
-                jedis.setex(blackKey, jwtService.getRefreshTokenTtlSec(), "1");
                 logger.info("Refresh token revoked: {} for user: {}", jti, userId);
             } else {
                 logger.warn("Refresh token not found in active list: {}", jti);
@@ -0,0 +1,288 @@
+package app.store;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.UnaryOperator;
+
+public class CachedPostRepo extends RedisPostRepo implements TimelineChannel.Listener {
+    private static final Logger logger = LoggerFactory.getLogger(CachedPostRepo.class);
+    
+    private final TimelineChannel channel;
+    private final int windowSize;
+    
+    // 最新 windowSize 件のスナップショット（null = 未ロード/無効化済み）
+    private final AtomicReference<Window> window = new AtomicReference<>();
+    // 変更・無効化のたびに進める。ロード中に変更があった場合は結果を捨てる
+    private final AtomicLong generation = new AtomicLong();
+    
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    
+    public CachedPostRepo(RedisClient redisClient, TimelineChannel channel, int windowSize) {
+        super(redisClient);
+        this.channel = channel;
+        this.windowSize = windowSize;
+        channel.addListener(this);
+        logger.info("Post timeline cache initialized - window size: {}", windowSize);
+    }
+    
+    @Override
+    public PostPage findPage(int limit, String before) {
+        PostPage page = cachedPage(limit, before);
+        if (page != null) {
+            return page;
+        }
+        
+        // キャッシュ範囲外（古いページ）はRedisから読む
+        return super.findPage(limit, before);
+    }
+    
+    @Override
+    public PostPage streamPage(int limit, String before, PostVisitor visitor) throws IOException {
+        PostPage page = cachedPage(limit, before);
+        if (page == null) {
+            return super.streamPage(limit, before, visitor);
+        }
+        
+        for (Post post : page.getPosts()) {
+            visitor.visit(post);
+        }
+        return new PostPage(Collections.emptyList(), page.getNextCursor(), page.getTotal());
+    }
+    
+    // キャッシュから1ページを切り出す（範囲外ならnull）
+    private PostPage cachedPage(int limit, String before) {
+        PostPage.Cursor cursor = PostPage.decodeCursor(before);
+        
+        // 1回の呼び出しで数えるのはヒット・ミスのどちらか1回（ロードした場合はミス）
+        Window current = window.get();
+        boolean loaded = current == null;
+        if (loaded) {
+            current = load();
+        }
+        
+        PostPage page = current.page(limit, cursor);
+        if (page != null && !loaded) {
+            hits.increment();
+            logger.debug("Timeline cache hit: limit={}, before={}", limit, before);
+        } else {
+            misses.increment();
+            logger.debug("Timeline cache miss: limit={}, before={}", limit, before);
+        }
+        return page;
+    }
+    
+    @Override
+    public long getTimelineVersion() {
+        Window current = window.get();
+        if (current == null) {
+            current = load();
+        }
+        return current.version;
+    }
+    
+    @Override
+    public long save(Post post) {
+        long version = super.save(post);
+        applyCreated(post, version);
+        channel.publish(PostEvent.created(post, version));
+        return version;
+    }
+    
+    @Override
+    public OptionalLong delete(String postId) {
+        OptionalLong version = super.delete(postId);
+        if (version.isPresent()) {
+            applyDeleted(postId, version.getAsLong());
+            channel.publish(PostEvent.deleted(postId, version.getAsLong()));
+        }
+        return version;
+    }
+    
+    @Override
+    public void onEvent(PostEvent event) {
+        // 自ノードの変更は書き込み時に反映済み
+        if (channel.getNodeId().equals(event.getOrigin())) {
+            return;
+        }
+        
+        logger.debug("Applying remote timeline event: {}", event);
+        invalidateBuckets();
+        if (PostEvent.CREATED.equals(event.getType()) && event.getPost() != null) {
+            applyCreated(event.getPost(), event.getVersion());
+        } else if (PostEvent.DELETED.equals(event.getType())) {
+            applyDeleted(event.getPostId(), event.getVersion());
+        } else {
+            invalidate();
+        }
+    }
+    
+    @Override
+    public void onResubscribe() {
+        invalidateBuckets();
+        invalidate();
+    }
+    
+    public void invalidate() {
+        generation.incrementAndGet();
+        window.set(null);
+        logger.debug("Timeline cache invalidated");
+    }
+    
+    public long getHits() {
+        return hits.sum();
+    }
+    
+    public long getMisses() {
+        return misses.sum();
+    }
+    
+    private Window load() {
+        long startGeneration = generation.get();
+        // バージョンは先に読む（データより古いバージョンなら次回のリクエストで更新される）
+        long version = super.getTimelineVersion();
+        PostPage head = super.findPage(windowSize, null);
+        Window loaded = new Window(head.getPosts(), head.getTotal(), head.getNextCursor() == null, version);
+        
+        // ロード中に変更が入っていなければ採用する（入っていれば今回だけ使い、次回再ロード）
+        if (generation.get() == startGeneration) {
+            window.compareAndSet(null, loaded);
+        }
+        logger.debug("Timeline cache loaded: {} posts, total={}", loaded.posts.size(), loaded.total);
+        return loaded;
+    }
+    
+    private void applyCreated(Post post, long version) {
+        apply(version, current -> current.withCreated(post, version, windowSize));
+    }
+    
+    private void applyDeleted(String postId, long version) {
+        apply(version, current -> current.withDeleted(postId, version, windowSize));
+    }
+    
+    // 変更はバージョン順に1つずつ適用する（複数ノードでは通知の到着順がバージョン順とは限らない）
+    // ウィンドウのバージョン以下の変更は反映済み（ロード時はデータより先にバージョンを読む）なので捨て、
+    // 間が抜けている場合は、遅れて届いた古い変更（削除後の作成など）で内容が戻らないようにウィンドウを作り直す
+    private void apply(long version, UnaryOperator<Window> change) {
+        generation.incrementAndGet();
+        window.updateAndGet(current -> {
+            if (current == null || version <= current.version) {
+                return current;
+            }
+            if (version != current.version + 1) {
+                logger.debug("Timeline event out of order (window version {}, event version {}), reloading", current.version, version);
+                return null;
+            }
+            return change.apply(current);
+        });
+    }
+    
+    private static final class Window {
+        // posts_zset と同じ順序（作成時刻降順、同時刻はID降順）
+        private final List<Post> posts;
+        private final long total;
+        // タイムライン全体がウィンドウに収まっているか
+        private final boolean complete;
+        private final long version;
+        
+        Window(List<Post> posts, long total, boolean complete, long version) {
+            this.posts = Collections.unmodifiableList(posts);
+            this.total = total;
+            this.complete = complete;
+            this.version = version;
+        }
+        
+        PostPage page(int limit, PostPage.Cursor cursor) {
+            int start = 0;
+            if (cursor != null) {
+                while (start < posts.size() && !cursor.isAfter(posts.get(start).getCreated(), posts.get(start).getId())) {
+                    start++;
+                }
+                // カーソルがウィンドウ末尾を越える場合はキャッシュで判断できない
+                if (start == posts.size() && !complete) {
+                    return null;
+                }
+            }
+            
+            int end = start + limit;
+            boolean hasMore;
+            if (end < posts.size()) {
+                hasMore = true;
+            } else if (complete) {
+                end = posts.size();
+                hasMore = false;
+            } else {
+                return null;
+            }
+            
+            List<Post> slice = new ArrayList<>(posts.subList(start, end));
+            String nextCursor = null;
+            if (hasMore) {
+                Post last = slice.get(slice.size() - 1);
+                nextCursor = PostPage.encodeCursor(last.getCreated(), last.getId());
+            }
+            return new PostPage(slice, nextCursor, total);
+        }
+        
+        Window withCreated(Post post, long newVersion, int windowSize) {
+            long nextVersion = Math.max(version, newVersion);
+            // ウィンドウにある投稿（上書き・再配信）は件数を変えずに置き換える
+            boolean present = false;
+            List<Post> updated = new ArrayList<>(posts.size() + 1);
+            for (Post existing : posts) {
+                if (existing.getId().equals(post.getId())) {
+                    present = true;
+                } else {
+                    updated.add(existing);
+                }
+            }
+            
+            int index = 0;
+            while (index < updated.size() && !isBefore(post, updated.get(index))) {
+                index++;
+            }
+            if (index == updated.size() && !complete) {
+                // ウィンドウより古い位置の投稿は、新規か既存の上書きかを判断できないため作り直す（件数もRedisから読み直す）
+                return null;
+            }
+            updated.add(index, post);
+            
+            boolean stillComplete = complete;
+            if (updated.size() > windowSize) {
+                updated.remove(updated.size() - 1);
+                stillComplete = false;
+            }
+            return new Window(updated, present ? total : total + 1, stillComplete, nextVersion);
+        }
+        
+        Window withDeleted(String postId, long newVersion, int windowSize) {
+            List<Post> updated = new ArrayList<>(posts.size());
+            for (Post existing : posts) {
+                if (!existing.getId().equals(postId)) {
+                    updated.add(existing);
+                }
+            }
+            // 削除が続いてウィンドウが痩せた場合は作り直す
+            if (!complete && updated.size() < windowSize / 2) {
+                return null;
+            }
+            return new Window(updated, Math.max(0, total - 1), complete, Math.max(version, newVersion));
+        }
+        
+        private static boolean isBefore(Post a, Post b) {
+            if (a.getCreated() != b.getCreated()) {
+                return a.getCreated() > b.getCreated();
+            }
+            return a.getId().compareTo(b.getId()) > 0;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package app.store;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+
+// 値ごとに有効期限を持つマップ（メモリ実装のTTL用）
+// 期限切れの値は読み出し時に無いものとして扱い、purgeExpired() でまとめて削除する
+final class ExpiringMap<K, V> {
+    // 期限なし
+    static final long NO_EXPIRY = Long.MAX_VALUE;
+    
+    private final ConcurrentHashMap<K, Entry<V>> entries = new ConcurrentHashMap<>();
+    
+    V get(K key) {
+        Entry<V> entry = entries.get(key);
+        return entry != null && !entry.isExpired(System.currentTimeMillis()) ? entry.value : null;
+    }
+    
+    boolean containsKey(K key) {
+        return get(key) != null;
+    }
+    
+    void put(K key, V value, long ttlMillis) {
+        entries.put(key, new Entry<>(value, expiresAt(ttlMillis)));
+    }
+    
+    // キーが無い（または期限切れの）場合だけ設定する。設定した場合は true
+    boolean putIfAbsent(K key, V value, long ttlMillis) {
+        Entry<V> entry = new Entry<>(value, expiresAt(ttlMillis));
+        long now = System.currentTimeMillis();
+        return entries.compute(key, (k, current) -> current == null || current.isExpired(now) ? entry : current) == entry;
+    }
+    
+    // 有効な値を取り出して削除する（無ければ null）
+    V remove(K key) {
+        Entry<V> entry = entries.remove(key);
+        return entry != null && !entry.isExpired(System.currentTimeMillis()) ? entry.value : null;
+    }
+    
+    // 値が一致する場合だけ削除する
+    boolean remove(K key, V value) {
+        boolean[] removed = new boolean[1];
+        entries.computeIfPresent(key, (k, current) -> {
+            if (current.value.equals(value)) {
+                removed[0] = true;
+                return null;
+            }
+            return current;
+        });
+        return removed[0];
+    }
+    
+    // 削除した件数を返す
+    int purgeExpired() {
+        long now = System.currentTimeMillis();
+        int purged = 0;
+        for (Iterator<Entry<V>> it = entries.values().iterator(); it.hasNext();) {
+            if (it.next().isExpired(now)) {
+                it.remove();
+                purged++;
+            }
+        }
+        return purged;
+    }
+    
+    int size() {
+        return entries.size();
+    }
+    
+    private static long expiresAt(long ttlMillis) {
+        return ttlMillis == NO_EXPIRY ? NO_EXPIRY : System.currentTimeMillis() + ttlMillis;
+    }
+    
+    private static final class Entry<V> {
+        private final V value;
+        private final long expiresAt;
+        
+        Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+        
+        boolean isExpired(long now) {
+            return now >= expiresAt;
+        }
+    }
+}
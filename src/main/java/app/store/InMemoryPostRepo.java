@@ -0,0 +1,138 @@
+package app.store;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.OptionalLong;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// プロセス内メモリに投稿を保持する（単一ノード用。読み取りはロックを使わない並行コレクションのみで構成）
+// タイムラインは (created, id) の降順に並べたスキップリストで、Redis版の posts_zset と同じ順序になる
+// 書き込みだけは例外で、1つのロックの中で更新・バージョンの採番・通知を行う（Redis版のLuaスクリプトと同じく、
+// イベントはバージョン順に1つずつ配信される。PostStreamHub の再送は連番を前提にしている）
+public class InMemoryPostRepo implements PostRepo {
+    private static final Logger logger = LoggerFactory.getLogger(InMemoryPostRepo.class);
+    
+    // Cursor.isAfter と同じ順序（作成時刻の降順、同時刻はIDの降順）
+    private static final Comparator<PostPage.Cursor> TIMELINE_ORDER = Comparator
+        .comparingLong(PostPage.Cursor::getCreated).reversed()
+        .thenComparing(PostPage.Cursor::getId, Comparator.reverseOrder());
+    
+    private final TimelineChannel channel;
+    private final ConcurrentHashMap<String, Post> posts = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<PostPage.Cursor, Post> timeline = new ConcurrentSkipListMap<>(TIMELINE_ORDER);
+    private final AtomicLong version = new AtomicLong();
+    private final Object writeLock = new Object();
+    
+    public InMemoryPostRepo(TimelineChannel channel) {
+        this.channel = channel;
+    }
+    
+    @Override
+    public long save(Post post) {
+        logger.debug("Saving post to memory: {}", post.getId());
+        
+        synchronized (writeLock) {
+            Post previous = posts.put(post.getId(), post);
+            if (previous != null) {
+                timeline.remove(key(previous));
+            }
+            timeline.put(key(post), post);
+            
+            // リスナーは送信キューに積むだけなので、ロックを持ったまま通知する
+            long newVersion = version.incrementAndGet();
+            channel.publish(PostEvent.created(post, newVersion));
+            return newVersion;
+        }
+    }
+    
+    @Override
+    public List<Post> findAll() {
+        return new ArrayList<>(timeline.values());
+    }
+    
+    @Override
+    public PostPage findPage(int limit, String before) {
+        List<Post> page = new ArrayList<>(limit);
+        try {
+            PostPage result = streamPage(limit, before, page::add);
+            return new PostPage(page, result.getNextCursor(), result.getTotal());
+        } catch (IOException e) {
+            // リストへの追加では発生しない
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    @Override
+    public PostPage streamPage(int limit, String before, PostVisitor visitor) throws IOException {
+        PostPage.Cursor cursor = PostPage.decodeCursor(before);
+        NavigableMap<PostPage.Cursor, Post> view = cursor == null ? timeline : timeline.tailMap(cursor, false);
+        
+        int count = 0;
+        Post last = null;
+        String nextCursor = null;
+        for (Post post : view.values()) {
+            if (count == limit) {
+                nextCursor = PostPage.encodeCursor(last.getCreated(), last.getId());
+                break;
+            }
+            visitor.visit(post);
+            last = post;
+            count++;
+        }
+        return new PostPage(Collections.emptyList(), nextCursor, posts.size());
+    }
+    
+    @Override
+    public List<Post> findByIds(List<String> postIds) {
+        List<Post> found = new ArrayList<>(postIds.size());
+        for (String postId : postIds) {
+            Post post = posts.get(postId);
+            if (post != null) {
+                found.add(post);
+            }
+        }
+        return found;
+    }
+    
+    @Override
+    public Post findById(String postId) {
+        return posts.get(postId);
+    }
+    
+    @Override
+    public OptionalLong delete(String postId) {
+        logger.debug("Deleting post from memory: {}", postId);
+        
+        synchronized (writeLock) {
+            Post removed = posts.remove(postId);
+            if (removed == null) {
+                logger.debug("Post not found for deletion: {}", postId);
+                return OptionalLong.empty();
+            }
+            timeline.remove(key(removed));
+            
+            long newVersion = version.incrementAndGet();
+            channel.publish(PostEvent.deleted(postId, newVersion));
+            return OptionalLong.of(newVersion);
+        }
+    }
+    
+    @Override
+    public long getTimelineVersion() {
+        return version.get();
+    }
+    
+    private static PostPage.Cursor key(Post post) {
+        return new PostPage.Cursor(post.getCreated(), post.getId());
+    }
+}
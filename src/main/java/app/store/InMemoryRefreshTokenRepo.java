@@ -0,0 +1,27 @@
+package app.store;
+
+// プロセス内メモリにリフレッシュトークンの有効・失効リストを保持する（単一ノード用）
+public class InMemoryRefreshTokenRepo implements RefreshTokenRepo {
+    // JTI → ユーザーID
+    private final ExpiringMap<String, String> active = new ExpiringMap<>();
+    private final ExpiringMap<String, String> blacklist = new ExpiringMap<>();
+    
+    @Override
+    public void activate(String jti, String userId, int ttlSec) {
+        active.put(jti, userId, ttlSec * 1000L);
+    }
+    
+    @Override
+    public String revoke(String jti, int ttlSec) {
+        String userId = active.remove(jti);
+        if (userId != null) {
+            blacklist.put(jti, "1", ttlSec * 1000L);
+        }
+        return userId;
+    }
+    
+    // 期限切れのトークンを削除する（削除した件数を返す）
+    public int purgeExpired() {
+        return active.purgeExpired() + blacklist.purgeExpired();
+    }
+}
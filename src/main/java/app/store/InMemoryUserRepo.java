@@ -0,0 +1,112 @@
+package app.store;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+// プロセス内メモリにユーザーを保持する（単一ノード用）
+// ユーザー名・メールアドレスの予約は有効期限付きのエントリで表し、save() で期限なしに置き換える
+public class InMemoryUserRepo implements UserRepo {
+    private static final Logger logger = LoggerFactory.getLogger(InMemoryUserRepo.class);
+    
+    // 予約したまま save() されなかった場合に名前とメールアドレスが解放されるまでの時間
+    private static final long RESERVATION_TTL_MS = 60_000;
+    
+    private final ConcurrentHashMap<String, User> users = new ConcurrentHashMap<>();
+    // ユーザー名 / 正規化したメールアドレス → ユーザーID
+    private final ExpiringMap<String, String> usernames = new ExpiringMap<>();
+    private final ExpiringMap<String, String> emails = new ExpiringMap<>();
+    
+    @Override
+    public void save(User user) {
+        logger.debug("Saving user to memory: {}", user.getUsername());
+        
+        users.put(user.getId(), copy(user));
+        usernames.put(user.getUsername(), user.getId(), ExpiringMap.NO_EXPIRY);
+        emails.put(normalizeEmail(user.getEmail()), user.getId(), ExpiringMap.NO_EXPIRY);
+    }
+    
+    @Override
+    public void updatePassHash(String userId, String passHash) {
+        logger.debug("Updating password hash for user: {}", userId);
+        
+        users.computeIfPresent(userId, (id, current) -> {
+            User updated = copy(current);
+            updated.setPassHash(passHash);
+            return updated;
+        });
+    }
+    
+    @Override
+    public User findById(String userId) {
+        User user = users.get(userId);
+        return user != null ? copy(user) : null;
+    }
+    
+    @Override
+    public User findByUsername(String username) {
+        String userId = usernames.get(username);
+        return userId != null ? findById(userId) : null;
+    }
+    
+    @Override
+    public boolean existsByUsername(String username) {
+        return usernames.containsKey(username);
+    }
+    
+    @Override
+    public boolean existsByEmail(String email) {
+        return emails.containsKey(normalizeEmail(email));
+    }
+    
+    @Override
+    public Reservation reserve(String username, String email, String userId) {
+        logger.debug("Reserving username and email for signup: {}", username);
+        
+        if (!usernames.putIfAbsent(username, userId, RESERVATION_TTL_MS)) {
+            return Reservation.USERNAME_TAKEN;
+        }
+        if (!emails.putIfAbsent(normalizeEmail(email), userId, RESERVATION_TTL_MS)) {
+            // ユーザー名の予約を取り消す
+            usernames.remove(username, userId);
+            return Reservation.EMAIL_TAKEN;
+        }
+        return Reservation.RESERVED;
+    }
+    
+    @Override
+    public void release(String username, String email, String userId) {
+        logger.debug("Releasing signup reservation: {}", username);
+        
+        usernames.remove(username, userId);
+        emails.remove(normalizeEmail(email), userId);
+    }
+    
+    @Override
+    public void migrateEmailIndex() {
+        // メモリ上のデータは常に現在の形式
+    }
+    
+    // 期限切れの予約を削除する（削除した件数を返す）
+    public int purgeExpired() {
+        return usernames.purgeExpired() + emails.purgeExpired();
+    }
+    
+    // 呼び出し側での変更が保存内容に影響しないよう、常にコピーを出し入れする
+    private static User copy(User user) {
+        User copy = new User();
+        copy.setId(user.getId());
+        copy.setUsername(user.getUsername());
+        copy.setEmail(user.getEmail());
+        copy.setPassHash(user.getPassHash());
+        copy.setRoles(new HashSet<>(user.getRoles()));
+        return copy;
+    }
+    
+    private static String normalizeEmail(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+}
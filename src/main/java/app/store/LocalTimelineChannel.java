@@ -0,0 +1,49 @@
+package app.store;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// プロセス内だけのタイムライン通知（メモリ版のストレージ用）。publish したスレッドでそのままリスナーを呼ぶ
+public class LocalTimelineChannel implements TimelineChannel {
+    private static final Logger logger = LoggerFactory.getLogger(LocalTimelineChannel.class);
+    
+    private final String nodeId = UUID.randomUUID().toString();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    
+    @Override
+    public String getNodeId() {
+        return nodeId;
+    }
+    
+    @Override
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+    
+    @Override
+    public void publish(PostEvent event) {
+        event.setOrigin(nodeId);
+        
+        for (Listener listener : listeners) {
+            try {
+                listener.onEvent(event);
+            } catch (Exception e) {
+                logger.error("Timeline listener failed for event: {}", event, e);
+            }
+        }
+    }
+    
+    @Override
+    public void start() {
+        logger.info("Local timeline channel started (node: {})", nodeId);
+    }
+    
+    @Override
+    public void close() {
+        logger.info("Local timeline channel closed");
+    }
+}
@@ -0,0 +1,95 @@
+package app.store;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public class PostEvent {
+    public static final String CREATED = "created";
+    public static final String DELETED = "deleted";
+    
+    @JsonProperty("type")
+    private String type;
+    
+    @JsonProperty("postId")
+    private String postId;
+    
+    // CREATEDの場合のみ設定
+    @JsonProperty("post")
+    private Post post;
+    
+    // 変更後のタイムラインバージョン
+    @JsonProperty("version")
+    private long version;
+    
+    // 発行元ノードID（自ノードのイベントを無視するため）
+    @JsonProperty("origin")
+    private String origin;
+    
+    // デフォルトコンストラクタ（Jackson用）
+    public PostEvent() {}
+    
+    public PostEvent(String type, String postId, Post post, long version) {
+        this.type = type;
+        this.postId = postId;
+        this.post = post;
+        this.version = version;
+    }
+    
+    public static PostEvent created(Post post, long version) {
+        return new PostEvent(CREATED, post.getId(), post, version);
+    }
+    
+    public static PostEvent deleted(String postId, long version) {
+        return new PostEvent(DELETED, postId, null, version);
+    }
+    
+    // Getters and Setters
+    public String getType() {
+        return type;
+    }
+    
+    public void setType(String type) {
+        this.type = type;
+    }
+    
+    public String getPostId() {
+        return postId;
+    }
+    
+    public void setPostId(String postId) {
+        this.postId = postId;
+    }
+    
+    public Post getPost() {
+        return post;
+    }
+    
+    public void setPost(Post post) {
+        this.post = post;
+    }
+    
+    public long getVersion() {
+        return version;
+    }
+    
+    public void setVersion(long version) {
+        this.version = version;
+    }
+    
+    public String getOrigin() {
+        return origin;
+    }
+    
+    public void setOrigin(String origin) {
+        this.origin = origin;
+    }
+    
+    @Override
+    public String toString() {
+        return "PostEvent{" +
+                "type='" + type + '\'' +
+                ", postId='" + postId + '\'' +
+                ", version=" + version +
+                ", origin='" + origin + '\'' +
+                '}';
+    }
+}
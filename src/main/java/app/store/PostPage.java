@@ -0,0 +1,85 @@
+package app.store;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+public class PostPage {
+    @JsonProperty("posts")
+    private final List<Post> posts;
+    
+    @JsonProperty("nextCursor")
+    private final String nextCursor;
+    
+    @JsonProperty("total")
+    private final long total;
+    
+    public PostPage(List<Post> posts, String nextCursor, long total) {
+        this.posts = posts;
+        this.nextCursor = nextCursor;
+        this.total = total;
+    }
+    
+    public List<Post> getPosts() {
+        return posts;
+    }
+    
+    // 次ページが無い場合はnull
+    public String getNextCursor() {
+        return nextCursor;
+    }
+    
+    public long getTotal() {
+        return total;
+    }
+    
+    // カーソル形式: "<created>:<id>"（posts_zsetのスコアとメンバー）
+    public static String encodeCursor(long created, String id) {
+        return created + ":" + id;
+    }
+    
+    public static Cursor decodeCursor(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        
+        int sep = cursor.indexOf(':');
+        if (sep <= 0 || sep == cursor.length() - 1) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+        
+        try {
+            long created = Long.parseLong(cursor.substring(0, sep));
+            return new Cursor(created, cursor.substring(sep + 1));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+        }
+    }
+    
+    public static class Cursor {
+        private final long created;
+        private final String id;
+        
+        public Cursor(long created, String id) {
+            this.created = created;
+            this.id = id;
+        }
+        
+        public long getCreated() {
+            return created;
+        }
+        
+        public String getId() {
+            return id;
+        }
+        
+        // 降順タイムライン上でこのカーソルより後ろにある要素か
+        // （同一スコア内はZREVRANGEと同じくメンバーの辞書順降順）
+        public boolean isAfter(long score, String member) {
+            if (score != created) {
+                return score < created;
+            }
+            return member.compareTo(id) < 0;
+        }
+    }
+}
@@ -1,25 +1,51 @@
 package app.store;
 
+import app.metrics.Histogram;
+import org.apache.commons.pool2.impl.GenericObjectPool;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import redis.clients.jedis.ConnectionPoolConfig;
+import redis.clients.jedis.DefaultJedisClientConfig;
+import redis.clients.jedis.HostAndPort;
 import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisClientConfig;
+import redis.clients.jedis.JedisCluster;
 import redis.clients.jedis.JedisPool;
 import redis.clients.jedis.JedisPoolConfig;
+import redis.clients.jedis.providers.ClusterConnectionProvider;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Redisへの接続（単一ノードは接続プール、REDIS_CLUSTER_NODES を指定した場合はクラスター）
+// リポジトリは openSession() で接続を得て、キー名は getKeys() の構成に従う
 public class RedisClient {
     private static final Logger logger = LoggerFactory.getLogger(RedisClient.class);
     
     private final JedisPool jedisPool;
+    private final JedisCluster jedisCluster;
+    private final RedisKeys keys;
+    private final Histogram borrowWaits = Histogram.forWaits();
+    private final LongAdder borrowTimeouts = new LongAdder();
     
     public RedisClient(String host, int port) {
-        logger.debug("Initializing Redis connection pool to {}:{}", host, port);
+        this(host, port, 20);
+    }
+    
+    public RedisClient(String host, int port, int maxTotal) {
+        logger.debug("Initializing Redis connection pool to {}:{} (max {} connections)", host, port, maxTotal);
         
         JedisPoolConfig poolConfig = new JedisPoolConfig();
-        poolConfig.setMaxTotal(20);
-        poolConfig.setMaxIdle(10);
-        poolConfig.setMinIdle(5);
-        
-        this.jedisPool = new JedisPool(poolConfig, host, port);
+        configurePool(poolConfig, maxTotal);
+        this.jedisPool = new TimedJedisPool(poolConfig, host, port, clientConfig(), borrowWaits, borrowTimeouts);
+        this.jedisCluster = null;
+        this.keys = RedisKeys.STANDALONE;
         
         // 接続テスト
         try (Jedis jedis = jedisPool.getResource()) {
@@ -31,11 +57,144 @@ public class RedisClient {
         }
     }
     
-    public JedisPool getJedisPool() {
-        return jedisPool;
+    // 作成済みのプールをそのまま使う（ベンチマーク用。借り出しの計測・失敗時の StoreUnavailableException への変換はしない）
+    public RedisClient(JedisPool jedisPool) {
+        this.jedisPool = jedisPool;
+        this.jedisCluster = null;
+        this.keys = RedisKeys.STANDALONE;
+    }
+    
+    private RedisClient(Set<HostAndPort> nodes, int maxTotal, int maxAttempts, long bucketMillis) {
+        logger.debug("Initializing Redis cluster client for {} (max {} connections per node)", nodes, maxTotal);
+        
+        ConnectionPoolConfig poolConfig = new ConnectionPoolConfig();
+        configurePool(poolConfig, maxTotal);
+        try {
+            // 起動時にいずれかのノードからスロットの割り当てを読み込む
+            JedisClientConfig clientConfig = clientConfig();
+            ClusterConnectionProvider provider = new TimedClusterConnectionProvider(nodes, clientConfig, poolConfig, borrowWaits, borrowTimeouts);
+            this.jedisCluster = new JedisCluster(provider, maxAttempts,
+                Duration.ofMillis((long) clientConfig.getSocketTimeoutMillis() * maxAttempts));
+        } catch (Exception e) {
+            logger.error("Redis cluster connection failed", e);
+            throw new RuntimeException("Failed to connect to Redis cluster", e);
+        }
+        this.jedisPool = null;
+        this.keys = RedisKeys.cluster(bucketMillis);
+        logger.info("Redis cluster connected: {} nodes, timeline bucket: {} ms", jedisCluster.getClusterNodes().size(), bucketMillis);
+    }
+    
+    // nodes: "host:port,host:port,..."（一部のノードを指定すれば残りは自動で見つける）
+    public static RedisClient cluster(String nodes, int maxTotal) {
+        Set<HostAndPort> seeds = new LinkedHashSet<>();
+        for (String node : nodes.split(",")) {
+            if (!node.isBlank()) {
+                seeds.add(HostAndPort.from(node.trim()));
+            }
+        }
+        if (seeds.isEmpty()) {
+            throw new IllegalArgumentException("No Redis cluster nodes given: " + nodes);
+        }
+        
+        int maxAttempts = Integer.parseInt(System.getenv().getOrDefault("REDIS_CLUSTER_MAX_ATTEMPTS", "5"));
+        long bucketHours = Long.parseLong(System.getenv().getOrDefault("REDIS_TIMELINE_BUCKET_HOURS", "24"));
+        return new RedisClient(seeds, maxTotal, maxAttempts, TimeUnit.HOURS.toMillis(bucketHours));
+    }
+    
+    // 接続数は負荷に応じて minIdle〜maxTotal の間で増減する（使われなくなった接続は定期的に検査して閉じる）
+    // 空きが無い場合は maxWait までしか待たない（-1 は無制限）。待ちきれない場合は StoreUnavailableException
+    // クラスターではノードごとのプールに同じ設定を使う
+    private static void configurePool(GenericObjectPoolConfig<?> poolConfig, int maxTotal) {
+        int maxIdle = Integer.parseInt(System.getenv().getOrDefault("REDIS_POOL_MAX_IDLE", String.valueOf(Math.max(10, maxTotal / 2))));
+        int minIdle = Integer.parseInt(System.getenv().getOrDefault("REDIS_POOL_MIN_IDLE", String.valueOf(Math.min(5, maxTotal))));
+        long maxWaitMillis = Long.parseLong(System.getenv().getOrDefault("REDIS_POOL_MAX_WAIT_MS", "200"));
+        long evictionIntervalMillis = Long.parseLong(System.getenv().getOrDefault("REDIS_POOL_EVICTION_INTERVAL_MS", "30000"));
+        long minEvictableIdleMillis = Long.parseLong(System.getenv().getOrDefault("REDIS_POOL_MIN_EVICTABLE_IDLE_MS", "60000"));
+        
+        poolConfig.setMaxTotal(maxTotal);
+        poolConfig.setMaxIdle(Math.min(maxIdle, maxTotal));
+        poolConfig.setMinIdle(Math.min(minIdle, maxTotal));
+        poolConfig.setBlockWhenExhausted(true);
+        poolConfig.setMaxWait(Duration.ofMillis(maxWaitMillis));
+        // 借り出しのたびに PING しない代わりに、アイドル中の接続をエビクションスレッドで検査する
+        poolConfig.setTestOnBorrow(false);
+        poolConfig.setTestWhileIdle(true);
+        poolConfig.setTimeBetweenEvictionRuns(Duration.ofMillis(evictionIntervalMillis));
+        poolConfig.setMinEvictableIdleDuration(Duration.ofMillis(minEvictableIdleMillis));
+        poolConfig.setNumTestsPerEvictionRun(-1);
+        
+        logger.info("Redis connection pool configured - max total: {}, max idle: {}, min idle: {}, max wait: {} ms",
+            maxTotal, poolConfig.getMaxIdle(), poolConfig.getMinIdle(), maxWaitMillis);
+    }
+    
+    private static JedisClientConfig clientConfig() {
+        int connectTimeoutMillis = Integer.parseInt(System.getenv().getOrDefault("REDIS_CONNECT_TIMEOUT_MS", "1000"));
+        int socketTimeoutMillis = Integer.parseInt(System.getenv().getOrDefault("REDIS_SOCKET_TIMEOUT_MS", "1000"));
+        logger.info("Redis client configured - connect timeout: {} ms, socket timeout: {} ms", connectTimeoutMillis, socketTimeoutMillis);
+        
+        return DefaultJedisClientConfig.builder()
+            .connectionTimeoutMillis(connectTimeoutMillis)
+            .socketTimeoutMillis(socketTimeoutMillis)
+            .build();
+    }
+    
+    RedisSession openSession() {
+        return jedisCluster != null ? RedisSession.of(jedisCluster) : RedisSession.of(jedisPool.getResource());
+    }
+    
+    RedisKeys getKeys() {
+        return keys;
+    }
+    
+    public boolean isCluster() {
+        return jedisCluster != null;
+    }
+    
+    // 接続の借り出しの待ち時間の分布
+    public Histogram getBorrowWaits() {
+        return borrowWaits;
+    }
+    
+    // maxWait を超えて借り出しを諦めた回数
+    public long getBorrowTimeouts() {
+        return borrowTimeouts.sum();
+    }
+    
+    // 以下、クラスターでは全ノードのプールの合計
+    public int getNumActive() {
+        return pools().stream().mapToInt(GenericObjectPool::getNumActive).sum();
+    }
+    
+    public int getNumIdle() {
+        return pools().stream().mapToInt(GenericObjectPool::getNumIdle).sum();
+    }
+    
+    public int getNumWaiters() {
+        return pools().stream().mapToInt(GenericObjectPool::getNumWaiters).sum();
+    }
+    
+    public int getMaxTotal() {
+        return pools().stream().mapToInt(GenericObjectPool::getMaxTotal).sum();
+    }
+    
+    // 借り出し中の接続数 / maxTotal（1.0 で飽和）
+    public double getSaturation() {
+        int maxTotal = getMaxTotal();
+        return maxTotal > 0 ? (double) getNumActive() / maxTotal : 0;
+    }
+    
+    private Collection<? extends GenericObjectPool<?>> pools() {
+        return jedisCluster != null ? jedisCluster.getClusterNodes().values() : List.of(jedisPool);
     }
     
     public void close() {
+        if (jedisCluster != null) {
+            logger.info("Closing Redis cluster client");
+            jedisCluster.close();
+            logger.info("Redis cluster client closed successfully");
+            return;
+        }
+        
         logger.info("Closing Redis connection pool");
         if (jedisPool != null && !jedisPool.isClosed()) {
             jedisPool.close();
@@ -0,0 +1,82 @@
+package app.store;
+
+import java.util.Locale;
+
+// Redisのキー構成
+// 単一ノードは従来どおりのキー名（既存のデータをそのまま使う）
+// クラスターでは、まとめて読み書きするキー（ユーザーとロール、リフレッシュトークンの有効・失効）にハッシュタグを付けて同じスロットに置き、
+// タイムラインは作成時刻で区切ったソート済みセットに分けて1つのスロットに集中しないようにする
+final class RedisKeys {
+    static final RedisKeys STANDALONE = new RedisKeys(false, 0);
+    
+    private final boolean cluster;
+    private final long bucketMillis;
+    
+    private RedisKeys(boolean cluster, long bucketMillis) {
+        this.cluster = cluster;
+        this.bucketMillis = bucketMillis;
+    }
+    
+    static RedisKeys cluster(long bucketMillis) {
+        if (bucketMillis <= 0) {
+            throw new IllegalArgumentException("Timeline bucket size must be positive: " + bucketMillis);
+        }
+        return new RedisKeys(true, bucketMillis);
+    }
+    
+    boolean isCluster() {
+        return cluster;
+    }
+    
+    String post(String postId) {
+        return "post:" + postId;
+    }
+    
+    // タイムラインのバージョン（ETagに使用）
+    String postsVersion() {
+        return cluster ? "{posts}:version" : "posts_version";
+    }
+    
+    // 単一ノードでは全投稿が1つのソート済みセット
+    String timeline() {
+        return "posts_zset";
+    }
+    
+    // クラスターでの作成時刻の区切り（created / 区切りの長さ）
+    long bucket(long created) {
+        return Math.floorDiv(created, bucketMillis);
+    }
+    
+    String timelineBucket(long bucket) {
+        return "posts:timeline:" + bucket;
+    }
+    
+    // 区切り → 件数のハッシュ（バージョンと同じスロットに置き、1回のスクリプトで一緒に更新する）
+    String timelineBuckets() {
+        return "{posts}:buckets";
+    }
+    
+    String user(String userId) {
+        return cluster ? "user:{" + userId + "}" : "user:" + userId;
+    }
+    
+    String userRoles(String userId) {
+        return user(userId) + ":roles";
+    }
+    
+    String userByName(String username) {
+        return "user:byname:" + username;
+    }
+    
+    String userByEmail(String email) {
+        return "user:byemail:" + email.trim().toLowerCase(Locale.ROOT);
+    }
+    
+    String activeRefreshToken(String jti) {
+        return cluster ? "rt:{" + jti + "}:active" : "rt:active:" + jti;
+    }
+    
+    String revokedRefreshToken(String jti) {
+        return cluster ? "rt:{" + jti + "}:black" : "rt:black:" + jti;
+    }
+}
@@ -0,0 +1,485 @@
+package app.store;
+
+import redis.clients.jedis.AbstractPipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.commands.JedisCommands;
+import redis.clients.jedis.resps.Tuple;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+// タイムラインは作成時刻順のソート済みセット（クラスターでは作成時刻で区切った複数のセットを新しい順につなげて読む）
+public class RedisPostRepo implements PostRepo {
+    private static final Logger logger = LoggerFactory.getLogger(RedisPostRepo.class);
+    
+    private final RedisClient redisClient;
+    private final RedisKeys keys;
+    private final ObjectMapper objectMapper;
+    // クラスター: 区切りの一覧と件数のノード内スナップショット（null = 未ロード/無効化済み）
+    // ページを読むたびに {posts} のスロットへ HGETALL を送らないよう、タイムラインが変わったときだけ読み直す
+    private final AtomicReference<Buckets> buckets = new AtomicReference<>();
+    private final AtomicLong bucketsGeneration = new AtomicLong();
+    private static final String POSTS_KEY = "posts";
+    // streamPage で1回のパイプラインに載せる投稿数
+    private static final int STREAM_BATCH_SIZE = 20;
+    // クラスター: 区切りの一覧を読み直す間隔（変更の通知が届かなかった場合の上限）
+    private static final long BUCKETS_REFRESH_MS = Long.parseLong(System.getenv().getOrDefault("REDIS_TIMELINE_BUCKETS_REFRESH_MS", "1000"));
+    
+    // 投稿の保存・削除はそれぞれ1往復・アトミックに行う（戻り値は新しいタイムラインバージョン）
+    private static final RedisScript SAVE_SCRIPT = new RedisScript(
+        "redis.call('HSET', KEYS[1], 'id', ARGV[1], 'message', ARGV[2], 'created', ARGV[3], 'userId', ARGV[4])\n" +
+        "redis.call('ZADD', KEYS[2], ARGV[3], ARGV[1])\n" +
+        "return redis.call('INCR', KEYS[3])");
+    
+    // 投稿もソート済みセットのエントリも無ければ -1
+    private static final RedisScript DELETE_SCRIPT = new RedisScript(
+        "local removed = redis.call('DEL', KEYS[1]) + redis.call('ZREM', KEYS[2], ARGV[1])\n" +
+        "if removed == 0 then return -1 end\n" +
+        "return redis.call('INCR', KEYS[3])");
+    
+    // クラスター用: ARGV の（区切り, 増減）の組ごとに区切りの件数を増減し（0件になった区切りは消す）、タイムラインバージョンを加算する
+    private static final RedisScript COUNT_SCRIPT = new RedisScript(
+        "for i = 1, #ARGV, 2 do\n" +
+        "  if ARGV[i + 1] ~= '0' and redis.call('HINCRBY', KEYS[1], ARGV[i], ARGV[i + 1]) <= 0 then\n" +
+        "    redis.call('HDEL', KEYS[1], ARGV[i])\n" +
+        "  end\n" +
+        "end\n" +
+        "return redis.call('INCR', KEYS[2])");
+    
+    public RedisPostRepo(RedisClient redisClient) {
+        this.redisClient = redisClient;
+        this.keys = redisClient.getKeys();
+        this.objectMapper = new ObjectMapper();
+    }
+    
+    // 保存後のタイムラインバージョンを返す
+    @Override
+    public long save(Post post) {
+        logger.debug("Saving post to Redis: {}", post.getId());
+        
+        try (RedisSession session = redisClient.openSession()) {
+            long version;
+            if (keys.isCluster()) {
+                version = saveSharded(session, post);
+                invalidateBuckets();
+            } else {
+                // 投稿情報の保存とソート済みセットへの追加（作成時刻でソート）
+                version = (Long) SAVE_SCRIPT.eval(session.commands(),
+                    List.of(keys.post(post.getId()), keys.timeline(), keys.postsVersion()),
+                    List.of(post.getId(), post.getMessage(), String.valueOf(post.getCreated()), post.getUserId()));
+            }
+            
+            logger.debug("Post saved successfully: {} (timeline version {})", post.getId(), version);
+            return version;
+        } catch (StoreUnavailableException e) {
+            // 接続を借りられない場合は呼び出し元で503にするため、包まずにそのまま投げる
+            throw e;
+        } catch (Exception e) {
+            logger.error("Failed to save post: {}", post.getId(), e);
+            throw new RuntimeException("Failed to save post", e);
+        }
+    }
+    
+    // クラスターでは投稿・区切りのソート済みセット・件数とバージョンが別々のスロットにあるため、1つのスクリプトにはできない
+    // 投稿と索引を書いてから件数とバージョンを更新する（読み出し側は投稿が見つからない索引を読み飛ばす）
+    // 同じIDでの上書きは単一ノードと同じく移動として扱い、作成時刻の区切りが変わる場合は古い区切りから外す
+    private long saveSharded(RedisSession session, Post post) {
+        String previousCreated = session.commands().hget(keys.post(post.getId()), "created");
+        long bucket = keys.bucket(post.getCreated());
+        Long previousBucket = previousCreated == null ? null : keys.bucket(Long.parseLong(previousCreated));
+        boolean moved = previousBucket != null && previousBucket != bucket;
+        
+        Response<Long> added;
+        Response<Long> removed = null;
+        try (AbstractPipeline pipeline = session.pipelined()) {
+            pipeline.hset(keys.post(post.getId()), Map.of("id", post.getId(), "message", post.getMessage(),
+                "created", String.valueOf(post.getCreated()), "userId", post.getUserId()));
+            added = pipeline.zadd(keys.timelineBucket(bucket), post.getCreated(), post.getId());
+            if (moved) {
+                removed = pipeline.zrem(keys.timelineBucket(previousBucket), post.getId());
+            }
+            pipeline.sync();
+        }
+        
+        // 同じ区切りでの上書きは件数を変えない（ZADD の結果が0）
+        List<String> counts = new ArrayList<>(4);
+        counts.add(String.valueOf(bucket));
+        counts.add(String.valueOf(added.get()));
+        if (moved) {
+            counts.add(String.valueOf(previousBucket));
+            counts.add(String.valueOf(-removed.get()));
+        }
+        return (Long) COUNT_SCRIPT.eval(session.commands(), List.of(keys.timelineBuckets(), keys.postsVersion()), counts);
+    }
+    
+    @Override
+    public List<Post> findAll() {
+        logger.debug("Retrieving all posts from Redis");
+        
+        try (RedisSession session = redisClient.openSession()) {
+            // ソート済みセットから投稿IDを取得（降順）
+            List<String> postIds = new ArrayList<>();
+            for (String key : timeline(session, null).keys) {
+                postIds.addAll(session.commands().zrevrange(key, 0, -1));
+            }
+            logger.debug("Found {} post IDs in Redis", postIds.size());
+            
+            List<Post> posts = findByIds(session, postIds);
+            
+            logger.debug("Retrieved {} posts from Redis", posts.size());
+            return posts;
+        } catch (StoreUnavailableException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Failed to get posts from Redis", e);
+            throw new RuntimeException("Failed to get posts", e);
+        }
+    }
+    
+    @Override
+    public PostPage findPage(int limit, String before) {
+        logger.debug("Retrieving posts page from Redis: limit={}, before={}", limit, before);
+        
+        PostPage.Cursor cursor = PostPage.decodeCursor(before);
+        
+        try (RedisSession session = redisClient.openSession()) {
+            Timeline timeline = timeline(session, cursor);
+            List<Tuple> entries = findEntries(session.commands(), timeline.keys, limit, cursor);
+            boolean hasMore = entries.size() > limit;
+            if (hasMore) {
+                entries = entries.subList(0, limit);
+            }
+            
+            List<Post> posts = findByIds(session, toIds(entries));
+            long total = timeline.total;
+            String nextCursor = hasMore ? nextCursor(entries) : null;
+            
+            logger.debug("Retrieved {} posts from Redis, nextCursor={}", posts.size(), nextCursor);
+            return new PostPage(posts, nextCursor, total);
+        } catch (StoreUnavailableException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Failed to get posts page from Redis", e);
+            throw new RuntimeException("Failed to get posts", e);
+        }
+    }
+    
+    // 投稿は STREAM_BATCH_SIZE 件ずつパイプラインで読み出す
+    @Override
+    public PostPage streamPage(int limit, String before, PostVisitor visitor) throws IOException {
+        logger.debug("Streaming posts page from Redis: limit={}, before={}", limit, before);
+        
+        PostPage.Cursor cursor = PostPage.decodeCursor(before);
+        
+        try (RedisSession session = redisClient.openSession()) {
+            Timeline timeline = timeline(session, cursor);
+            List<Tuple> entries = findEntries(session.commands(), timeline.keys, limit, cursor);
+            boolean hasMore = entries.size() > limit;
+            if (hasMore) {
+                entries = entries.subList(0, limit);
+            }
+            
+            List<String> postIds = toIds(entries);
+            int visited = 0;
+            for (int from = 0; from < postIds.size(); from += STREAM_BATCH_SIZE) {
+                List<String> batch = postIds.subList(from, Math.min(from + STREAM_BATCH_SIZE, postIds.size()));
+                for (Post post : findByIds(session, batch)) {
+                    visitor.visit(post);
+                    visited++;
+                }
+            }
+            
+            long total = timeline.total;
+            String nextCursor = hasMore ? nextCursor(entries) : null;
+            
+            logger.debug("Streamed {} posts from Redis, nextCursor={}", visited, nextCursor);
+            return new PostPage(Collections.emptyList(), nextCursor, total);
+        } catch (IOException e) {
+            throw e;
+        } catch (StoreUnavailableException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Failed to stream posts page from Redis", e);
+            throw new RuntimeException("Failed to get posts", e);
+        }
+    }
+    
+    // 読み出すソート済みセット（新しい順）とタイムライン全体の件数
+    // クラスターでは区切りの一覧（ノード内のスナップショット）から、カーソルを含む区切りとそれより古い区切りを選ぶ
+    private Timeline timeline(RedisSession session, PostPage.Cursor cursor) {
+        if (!keys.isCluster()) {
+            return new Timeline(List.of(keys.timeline()), session.commands().zcard(keys.timeline()));
+        }
+        
+        long now = System.currentTimeMillis();
+        Buckets current = buckets.get();
+        if (current == null || now - current.loadedAt >= BUCKETS_REFRESH_MS) {
+            current = loadBuckets(session.commands(), now);
+        }
+        
+        long newest = cursor == null ? Long.MAX_VALUE : keys.bucket(cursor.getCreated());
+        List<String> bucketKeys = new ArrayList<>(current.buckets.length + 1);
+        // 現在時刻の区切りはスナップショットより後に作られていても読む（空なら1往復増えるだけ）
+        long latest = keys.bucket(now);
+        if (latest <= newest && (current.buckets.length == 0 || current.buckets[0] < latest)) {
+            bucketKeys.add(keys.timelineBucket(latest));
+        }
+        for (long bucket : current.buckets) {
+            if (bucket <= newest) {
+                bucketKeys.add(keys.timelineBucket(bucket));
+            }
+        }
+        return new Timeline(bucketKeys, current.total);
+    }
+    
+    private Buckets loadBuckets(JedisCommands jedis, long now) {
+        long startGeneration = bucketsGeneration.get();
+        List<Long> found = new ArrayList<>();
+        long total = 0;
+        for (Map.Entry<String, String> entry : jedis.hgetAll(keys.timelineBuckets()).entrySet()) {
+            long count = Long.parseLong(entry.getValue());
+            total += count;
+            if (count > 0) {
+                found.add(Long.parseLong(entry.getKey()));
+            }
+        }
+        found.sort(Comparator.reverseOrder());
+        
+        long[] sorted = new long[found.size()];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = found.get(i);
+        }
+        Buckets loaded = new Buckets(sorted, total, now);
+        // 読み込み中に変更が入っていなければ採用する（入っていれば今回だけ使う）
+        if (bucketsGeneration.get() == startGeneration) {
+            buckets.set(loaded);
+        }
+        logger.debug("Timeline buckets loaded: {} buckets, total={}", sorted.length, total);
+        return loaded;
+    }
+    
+    // タイムラインが変わった（自ノードの書き込み・他ノードからの通知）ときに呼ぶ。次に読むときに区切りの一覧を読み直す
+    void invalidateBuckets() {
+        bucketsGeneration.incrementAndGet();
+        buckets.set(null);
+    }
+    
+    // カーソル位置（同スコアを含む）から降順に最大 limit + 1 件を取得
+    // 区切りどうしは作成時刻が重ならないため、新しい区切りから順に足りるまで読めば全体の順序になる
+    private List<Tuple> findEntries(JedisCommands jedis, List<String> timelineKeys, int limit, PostPage.Cursor cursor) {
+        List<Tuple> entries = new ArrayList<>();
+        String max = cursor == null ? "+inf" : String.valueOf(cursor.getCreated());
+        for (String key : timelineKeys) {
+            int offset = 0;
+            while (entries.size() <= limit) {
+                int count = limit + 1 - entries.size();
+                List<Tuple> tuples = jedis.zrevrangeByScoreWithScores(key, max, "-inf", offset, count);
+                for (Tuple tuple : tuples) {
+                    // 同一スコアでカーソル以前のものは読み飛ばす
+                    if (cursor == null || cursor.isAfter((long) tuple.getScore(), tuple.getElement())) {
+                        entries.add(tuple);
+                    }
+                }
+                if (tuples.size() < count) {
+                    break;
+                }
+                offset += tuples.size();
+            }
+            if (entries.size() > limit) {
+                break;
+            }
+        }
+        return entries;
+    }
+    
+    private static List<String> toIds(List<Tuple> entries) {
+        List<String> postIds = new ArrayList<>(entries.size());
+        for (Tuple entry : entries) {
+            postIds.add(entry.getElement());
+        }
+        return postIds;
+    }
+    
+    private static String nextCursor(List<Tuple> entries) {
+        Tuple last = entries.get(entries.size() - 1);
+        return PostPage.encodeCursor((long) last.getScore(), last.getElement());
+    }
+    
+    @Override
+    public List<Post> findByIds(List<String> postIds) {
+        logger.debug("Retrieving {} posts from Redis", postIds.size());
+        
+        try (RedisSession session = redisClient.openSession()) {
+            return findByIds(session, postIds);
+        } catch (StoreUnavailableException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Failed to get posts from Redis", e);
+            throw new RuntimeException("Failed to get posts", e);
+        }
+    }
+    
+    // HGETALLをパイプライン実行し（クラスターではノードごと）、存在しない投稿は読み飛ばす（入力順を維持）
+    private List<Post> findByIds(RedisSession session, List<String> postIds) {
+        if (postIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        
+        List<Response<Map<String, String>>> responses = new ArrayList<>(postIds.size());
+        try (AbstractPipeline pipeline = session.pipelined()) {
+            for (String postId : postIds) {
+                responses.add(pipeline.hgetAll(keys.post(postId)));
+            }
+            pipeline.sync();
+        }
+        
+        List<Post> posts = new ArrayList<>(responses.size());
+        for (int i = 0; i < responses.size(); i++) {
+            Post post = toPost(responses.get(i).get());
+            if (post != null) {
+                posts.add(post);
+            } else {
+                logger.debug("Post not found: {}", postIds.get(i));
+            }
+        }
+        return posts;
+    }
+    
+    private Post toPost(Map<String, String> hash) {
+        // 存在しないキーのHGETALLは空のマップを返す
+        if (hash == null || hash.isEmpty()) {
+            return null;
+        }
+        
+        Post post = new Post();
+        post.setId(hash.get("id"));
+        post.setMessage(hash.get("message"));
+        post.setCreated(Long.parseLong(hash.get("created")));
+        post.setUserId(hash.get("userId"));
+        return post;
+    }
+    
+    @Override
+    public Post findById(String postId) {
+        logger.debug("Retrieving post from Redis: {}", postId);
+        
+        try (RedisSession session = redisClient.openSession()) {
+            Post post = toPost(session.commands().hgetAll(keys.post(postId)));
+            
+            if (post == null) {
+                logger.debug("Post not found: {}", postId);
+                return null;
+            }
+            
+            logger.debug("Post retrieved successfully: {}", postId);
+            return post;
+        } catch (StoreUnavailableException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Failed to get post: {}", postId, e);
+            throw new RuntimeException("Failed to get post", e);
+        }
+    }
+    
+    // 削除後のタイムラインバージョンを返す（投稿が存在しない場合は空）
+    @Override
+    public OptionalLong delete(String postId) {
+        logger.debug("Deleting post from Redis: {}", postId);
+        
+        try (RedisSession session = redisClient.openSession()) {
+            // 投稿データとソート済みセットのエントリを削除
+            long version;
+            if (keys.isCluster()) {
+                version = deleteSharded(session, postId);
+                invalidateBuckets();
+            } else {
+                version = (Long) DELETE_SCRIPT.eval(session.commands(),
+                    List.of(keys.post(postId), keys.timeline(), keys.postsVersion()), List.of(postId));
+            }
+            
+            if (version < 0) {
+                logger.debug("Post not found for deletion: {}", postId);
+                return OptionalLong.empty();
+            }
+            
+            logger.debug("Post deleted successfully: {} (timeline version {})", postId, version);
+            return OptionalLong.of(version);
+        } catch (StoreUnavailableException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Failed to delete post: {}", postId, e);
+            throw new RuntimeException("Failed to delete post", e);
+        }
+    }
+    
+    // クラスター版の削除（投稿が存在しなければ -1）。区切りは投稿の作成時刻から求める
+    private long deleteSharded(RedisSession session, String postId) {
+        String created = session.commands().hget(keys.post(postId), "created");
+        if (created == null) {
+            return -1;
+        }
+        
+        long bucket = keys.bucket(Long.parseLong(created));
+        Response<Long> deleted;
+        Response<Long> removed;
+        try (AbstractPipeline pipeline = session.pipelined()) {
+            deleted = pipeline.del(keys.post(postId));
+            removed = pipeline.zrem(keys.timelineBucket(bucket), postId);
+            pipeline.sync();
+        }
+        // 同時に削除された場合
+        if (deleted.get() + removed.get() == 0) {
+            return -1;
+        }
+        
+        return (Long) COUNT_SCRIPT.eval(session.commands(), List.of(keys.timelineBuckets(), keys.postsVersion()),
+            List.of(String.valueOf(bucket), String.valueOf(-removed.get())));
+    }
+    
+    @Override
+    public long getTimelineVersion() {
+        try (RedisSession session = redisClient.openSession()) {
+            String version = session.commands().get(keys.postsVersion());
+            return version == null ? 0 : Long.parseLong(version);
+        } catch (StoreUnavailableException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Failed to get timeline version", e);
+            throw new RuntimeException("Failed to get timeline version", e);
+        }
+    }
+    
+    private static final class Buckets {
+        // 新しい順
+        private final long[] buckets;
+        private final long total;
+        private final long loadedAt;
+        
+        Buckets(long[] buckets, long total, long loadedAt) {
+            this.buckets = buckets;
+            this.total = total;
+            this.loadedAt = loadedAt;
+        }
+    }
+    
+    private static final class Timeline {
+        private final List<String> keys;
+        private final long total;
+        
+        Timeline(List<String> keys, long total) {
+            this.keys = keys;
+            this.total = total;
+        }
+    }
+}
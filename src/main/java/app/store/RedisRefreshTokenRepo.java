@@ -0,0 +1,53 @@
+package app.store;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+
+public class RedisRefreshTokenRepo implements RefreshTokenRepo {
+    private static final Logger logger = LoggerFactory.getLogger(RedisRefreshTokenRepo.class);
+    
+    // 有効なトークンを取り出して消し、あれば失効リストに入れる（2つのキーは同じスロットにある）
+    private static final RedisScript REVOKE_SCRIPT = new RedisScript(
+        "local userId = redis.call('GET', KEYS[1])\n" +
+        "if not userId then return false end\n" +
+        "redis.call('DEL', KEYS[1])\n" +
+        "redis.call('SET', KEYS[2], '1', 'EX', ARGV[1])\n" +
+        "return userId");
+    
+    private final RedisClient redisClient;
+    private final RedisKeys keys;
+    
+    public RedisRefreshTokenRepo(RedisClient redisClient) {
+        this.redisClient = redisClient;
+        this.keys = redisClient.getKeys();
+    }
+    
+    @Override
+    public void activate(String jti, String userId, int ttlSec) {
+        try (RedisSession session = redisClient.openSession()) {
+            session.commands().setex(keys.activeRefreshToken(jti), ttlSec, userId);
+        } catch (StoreUnavailableException e) {
+            // 接続を借りられない場合は呼び出し元で503にするため、包まずにそのまま投げる
+            throw e;
+        } catch (Exception e) {
+            logger.error("Failed to activate refresh token: {}", jti, e);
+            throw new RuntimeException("Failed to activate refresh token", e);
+        }
+    }
+    
+    @Override
+    public String revoke(String jti, int ttlSec) {
+        try (RedisSession session = redisClient.openSession()) {
+            // 同じトークンで同時にローテーションされても、取り出せるのは1回だけ
+            return (String) REVOKE_SCRIPT.eval(session.commands(),
+                List.of(keys.activeRefreshToken(jti), keys.revokedRefreshToken(jti)), List.of(String.valueOf(ttlSec)));
+        } catch (StoreUnavailableException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Failed to revoke refresh token: {}", jti, e);
+            throw new RuntimeException("Failed to revoke refresh token", e);
+        }
+    }
+}
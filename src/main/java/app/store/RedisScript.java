@@ -0,0 +1,43 @@
+package app.store;
+
+import redis.clients.jedis.commands.JedisCommands;
+import redis.clients.jedis.exceptions.JedisNoScriptException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.List;
+
+// Luaスクリプト（EVALSHAで実行し、サーバー側にキャッシュが無ければEVALで送り直す）
+// EVALで実行したスクリプトはそのノードにキャッシュされるため、クラスターでもキーのあるノードごとに1回だけ本文を送る
+// キーはすべて同じスロットにあること（クラスターの場合）
+public class RedisScript {
+    private final String source;
+    private final String sha;
+    
+    public RedisScript(String source) {
+        this.source = source;
+        this.sha = sha1(source);
+    }
+    
+    public Object eval(JedisCommands jedis, List<String> keys, List<String> args) {
+        try {
+            return jedis.evalsha(sha, keys, args);
+        } catch (JedisNoScriptException e) {
+            // 初回、またはRedisの再起動やSCRIPT FLUSHでキャッシュが消えた場合
+            return jedis.eval(source, keys, args);
+        }
+    }
+    
+    private static String sha1(String source) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(source.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (Exception e) {
+            throw new IllegalStateException("SHA-1 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package app.store;
+
+import redis.clients.jedis.AbstractPipeline;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisCluster;
+import redis.clients.jedis.JedisPubSub;
+import redis.clients.jedis.commands.JedisCommands;
+
+// リポジトリから見たRedisへの接続
+// 単一ノードではプールから借りた接続（閉じるとプールに返す）、クラスターでは共有のクライアント（キーのスロットでノードに振り分ける。閉じても何もしない）
+final class RedisSession implements AutoCloseable {
+    private final Jedis jedis;
+    private final JedisCluster cluster;
+    
+    private RedisSession(Jedis jedis, JedisCluster cluster) {
+        this.jedis = jedis;
+        this.cluster = cluster;
+    }
+    
+    static RedisSession of(Jedis jedis) {
+        return new RedisSession(jedis, null);
+    }
+    
+    static RedisSession of(JedisCluster cluster) {
+        return new RedisSession(null, cluster);
+    }
+    
+    JedisCommands commands() {
+        return jedis != null ? jedis : cluster;
+    }
+    
+    // クラスターではノードごとにまとめて送る（使い終わったら閉じてノードの接続を返す）
+    AbstractPipeline pipelined() {
+        return jedis != null ? jedis.pipelined() : cluster.pipelined();
+    }
+    
+    long publish(String channel, String message) {
+        return jedis != null ? jedis.publish(channel, message) : cluster.publish(channel, message);
+    }
+    
+    // 購読を解除するまで戻らない（クラスターではいずれかのノードに接続する。PUBLISHは全ノードに届く）
+    void subscribe(JedisPubSub pubSub, String... channels) {
+        if (jedis != null) {
+            jedis.subscribe(pubSub, channels);
+        } else {
+            cluster.subscribe(pubSub, channels);
+        }
+    }
+    
+    @Override
+    public void close() {
+        if (jedis != null) {
+            jedis.close();
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package app.store;
+
+import redis.clients.jedis.JedisPubSub;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class RedisTimelineChannel implements TimelineChannel {
+    private static final Logger logger = LoggerFactory.getLogger(RedisTimelineChannel.class);
+    
+    private static final String CHANNEL = "posts:events";
+    private static final long RECONNECT_DELAY_MS = 1000;
+    
+    private final RedisClient redisClient;
+    private final ObjectMapper objectMapper;
+    private final String nodeId;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    
+    private volatile boolean running;
+    private volatile JedisPubSub pubSub;
+    private Thread subscriberThread;
+    
+    public RedisTimelineChannel(RedisClient redisClient) {
+        this.redisClient = redisClient;
+        this.objectMapper = new ObjectMapper();
+        this.nodeId = UUID.randomUUID().toString();
+    }
+    
+    @Override
+    public String getNodeId() {
+        return nodeId;
+    }
+    
+    @Override
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+    
+    @Override
+    public void publish(PostEvent event) {
+        event.setOrigin(nodeId);
+        
+        try (RedisSession session = redisClient.openSession()) {
+            String message = objectMapper.writeValueAsString(event);
+            long receivers = session.publish(CHANNEL, message);
+            logger.debug("Published timeline event: {} to {} subscribers", event, receivers);
+        } catch (Exception e) {
+            // 配信に失敗しても書き込み自体は成功しているため、例外は投げない
+            logger.error("Failed to publish timeline event: {}", event, e);
+        }
+    }
+    
+    @Override
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        
+        running = true;
+        subscriberThread = new Thread(this::subscribeLoop, "timeline-subscriber");
+        subscriberThread.setDaemon(true);
+        subscriberThread.start();
+        logger.info("Timeline channel started: {} (node: {})", CHANNEL, nodeId);
+    }
+    
+    @Override
+    public synchronized void close() {
+        running = false;
+        JedisPubSub current = pubSub;
+        if (current != null && current.isSubscribed()) {
+            current.unsubscribe();
+        }
+        logger.info("Timeline channel closed");
+    }
+    
+    private void subscribeLoop() {
+        while (running) {
+            // SUBSCRIBE中の接続はプールから専有する
+            try (RedisSession session = redisClient.openSession()) {
+                pubSub = new JedisPubSub() {
+                    @Override
+                    public void onSubscribe(String channel, int subscribedChannels) {
+                        logger.debug("Subscribed to timeline channel: {}", channel);
+                        // 購読開始（再接続を含む）までの間のイベントは失われている可能性がある
+                        for (Listener listener : listeners) {
+                            listener.onResubscribe();
+                        }
+                    }
+                    
+                    @Override
+                    public void onMessage(String channel, String message) {
+                        dispatch(message);
+                    }
+                };
+                session.subscribe(pubSub, CHANNEL);
+            } catch (Exception e) {
+                if (running) {
+                    logger.warn("Timeline subscription lost, reconnecting: {}", e.getMessage());
+                }
+            }
+            
+            if (running) {
+                try {
+                    Thread.sleep(RECONNECT_DELAY_MS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+    
+    private void dispatch(String message) {
+        PostEvent event;
+        try {
+            event = objectMapper.readValue(message, PostEvent.class);
+        } catch (Exception e) {
+            logger.warn("Ignoring malformed timeline event: {}", message);
+            return;
+        }
+        
+        for (Listener listener : listeners) {
+            try {
+                listener.onEvent(event);
+            } catch (Exception e) {
+                logger.error("Timeline listener failed for event: {}", event, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,314 @@
+package app.store;
+
+import redis.clients.jedis.AbstractPipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.commands.JedisCommands;
+import redis.clients.jedis.params.ScanParams;
+import redis.clients.jedis.params.SetParams;
+import redis.clients.jedis.resps.ScanResult;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class RedisUserRepo implements UserRepo {
+    private static final Logger logger = LoggerFactory.getLogger(RedisUserRepo.class);
+    
+    private static final String EMAIL_INDEX_MIGRATION_KEY = "migration:user_email_index";
+    // 予約したままプロセスが落ちた場合に名前とメールアドレスが解放されるまでの時間
+    private static final long RESERVATION_TTL_MS = 60_000;
+    private static final int SCAN_BATCH_SIZE = 500;
+    
+    // ユーザー名・メールアドレスを1往復でまとめて予約する（0: 予約成功, 1: ユーザー名重複, 2: メールアドレス重複）
+    private static final RedisScript RESERVE_SCRIPT = new RedisScript(
+        "if redis.call('EXISTS', KEYS[1]) == 1 then return 1 end\n" +
+        "if redis.call('EXISTS', KEYS[2]) == 1 then return 2 end\n" +
+        "redis.call('SET', KEYS[1], ARGV[1], 'PX', ARGV[2])\n" +
+        "redis.call('SET', KEYS[2], ARGV[1], 'PX', ARGV[2])\n" +
+        "return 0");
+    
+    // 自分の予約のときだけ解放する
+    private static final RedisScript RELEASE_SCRIPT = new RedisScript(
+        "for _, key in ipairs(KEYS) do\n" +
+        "  if redis.call('GET', key) == ARGV[1] then redis.call('DEL', key) end\n" +
+        "end\n" +
+        "return 0");
+    
+    private final RedisClient redisClient;
+    private final RedisKeys keys;
+    private final ObjectMapper objectMapper;
+    
+    public RedisUserRepo(RedisClient redisClient) {
+        this.redisClient = redisClient;
+        this.keys = redisClient.getKeys();
+        this.objectMapper = new ObjectMapper();
+    }
+    
+    @Override
+    public void save(User user) {
+        logger.debug("Saving user to Redis: {}", user.getUsername());
+        
+        try (RedisSession session = redisClient.openSession();
+             AbstractPipeline pipeline = session.pipelined()) {
+            // ユーザー情報を保存
+            pipeline.hset(keys.user(user.getId()), Map.of("id", user.getId(), "username", user.getUsername(),
+                "email", user.getEmail(), "pass_hash", user.getPassHash()));
+            
+            // ロールを保存
+            for (String role : user.getRoles()) {
+                pipeline.sadd(keys.userRoles(user.getId()), role);
+            }
+            
+            // ユーザー名・メールアドレスからIDへのマッピングを保存（予約のTTLもここで外れる）
+            pipeline.set(keys.userByName(user.getUsername()), user.getId());
+            pipeline.set(keys.userByEmail(user.getEmail()), user.getId());
+            pipeline.sync();
+            
+            logger.debug("User saved successfully: {}", user.getUsername());
+        } catch (StoreUnavailableException e) {
+            // 接続を借りられない場合は呼び出し元で503にするため、包まずにそのまま投げる
+            throw e;
+        } catch (Exception e) {
+            logger.error("Failed to save user: {}", user.getUsername(), e);
+            throw new RuntimeException("Failed to save user", e);
+        }
+    }
+    
+    @Override
+    public void updatePassHash(String userId, String passHash) {
+        logger.debug("Updating password hash for user: {}", userId);
+        
+        try (RedisSession session = redisClient.openSession()) {
+            session.commands().hset(keys.user(userId), "pass_hash", passHash);
+        } catch (StoreUnavailableException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Failed to update password hash: {}", userId, e);
+            throw new RuntimeException("Failed to update password hash", e);
+        }
+    }
+    
+    @Override
+    public User findById(String userId) {
+        logger.debug("Finding user by ID: {}", userId);
+        
+        try (RedisSession session = redisClient.openSession()) {
+            // ユーザー情報とロールを1往復で読む（クラスターでも同じスロットにある）
+            Response<Map<String, String>> hash;
+            Response<Set<String>> roles;
+            try (AbstractPipeline pipeline = session.pipelined()) {
+                hash = pipeline.hgetAll(keys.user(userId));
+                roles = pipeline.smembers(keys.userRoles(userId));
+                pipeline.sync();
+            }
+            
+            // 存在しないキーのHGETALLは空のマップを返す
+            Map<String, String> fields = hash.get();
+            if (fields.isEmpty()) {
+                logger.debug("User not found: {}", userId);
+                return null;
+            }
+            
+            User user = new User();
+            user.setId(fields.get("id"));
+            user.setUsername(fields.get("username"));
+            user.setEmail(fields.get("email"));
+            user.setPassHash(fields.get("pass_hash"));
+            user.setRoles(roles.get());
+            
+            logger.debug("User found: {}", user.getUsername());
+            return user;
+        } catch (StoreUnavailableException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Failed to find user by ID: {}", userId, e);
+            throw new RuntimeException("Failed to find user", e);
+        }
+    }
+    
+    @Override
+    public User findByUsername(String username) {
+        logger.debug("Finding user by username: {}", username);
+        
+        try (RedisSession session = redisClient.openSession()) {
+            String userId = session.commands().get(keys.userByName(username));
+            
+            if (userId == null) {
+                logger.debug("User not found by username: {}", username);
+                return null;
+            }
+            
+            return findById(userId);
+        } catch (StoreUnavailableException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Failed to find user by username: {}", username, e);
+            throw new RuntimeException("Failed to find user", e);
+        }
+    }
+    
+    @Override
+    public boolean existsByUsername(String username) {
+        logger.debug("Checking if user exists by username: {}", username);
+        
+        try (RedisSession session = redisClient.openSession()) {
+            boolean exists = session.commands().exists(keys.userByName(username));
+            logger.debug("User exists by username {}: {}", username, exists);
+            return exists;
+        } catch (StoreUnavailableException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Failed to check user existence: {}", username, e);
+            throw new RuntimeException("Failed to check user existence", e);
+        }
+    }
+    
+    @Override
+    public boolean existsByEmail(String email) {
+        logger.debug("Checking if user exists by email: {}", email);
+        
+        try (RedisSession session = redisClient.openSession()) {
+            boolean exists = session.commands().exists(keys.userByEmail(email));
+            logger.debug("User exists by email {}: {}", email, exists);
+            return exists;
+        } catch (StoreUnavailableException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Failed to check user existence by email: {}", email, e);
+            throw new RuntimeException("Failed to check user existence", e);
+        }
+    }
+    
+    // save() までの間、ユーザー名とメールアドレスを userId で仮押さえする
+    @Override
+    public Reservation reserve(String username, String email, String userId) {
+        logger.debug("Reserving username and email for signup: {}", username);
+        
+        try (RedisSession session = redisClient.openSession()) {
+            Reservation reservation;
+            if (keys.isCluster()) {
+                reservation = reserveEach(session.commands(), username, email, userId);
+            } else {
+                Object result = RESERVE_SCRIPT.eval(session.commands(),
+                    List.of(keys.userByName(username), keys.userByEmail(email)),
+                    List.of(userId, String.valueOf(RESERVATION_TTL_MS)));
+                reservation = Reservation.values()[((Long) result).intValue()];
+            }
+            logger.debug("Reservation result for {}: {}", username, reservation);
+            return reservation;
+        } catch (StoreUnavailableException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Failed to reserve username and email: {}", username, e);
+            throw new RuntimeException("Failed to reserve user", e);
+        }
+    }
+    
+    // クラスターでは名前とメールアドレスのキーが別のスロットになるため、1つずつ SET NX で押さえる
+    // メールアドレスが取れなかった場合は、押さえた名前を戻す
+    private Reservation reserveEach(JedisCommands jedis, String username, String email, String userId) {
+        SetParams params = SetParams.setParams().nx().px(RESERVATION_TTL_MS);
+        if (jedis.set(keys.userByName(username), userId, params) == null) {
+            return Reservation.USERNAME_TAKEN;
+        }
+        if (jedis.set(keys.userByEmail(email), userId, params) == null) {
+            RELEASE_SCRIPT.eval(jedis, List.of(keys.userByName(username)), List.of(userId));
+            return Reservation.EMAIL_TAKEN;
+        }
+        return Reservation.RESERVED;
+    }
+    
+    @Override
+    public void release(String username, String email, String userId) {
+        logger.debug("Releasing signup reservation: {}", username);
+        
+        try (RedisSession session = redisClient.openSession()) {
+            List<String> reserved = List.of(keys.userByName(username), keys.userByEmail(email));
+            if (keys.isCluster()) {
+                // キーごとに別のスロットにある
+                for (String key : reserved) {
+                    RELEASE_SCRIPT.eval(session.commands(), List.of(key), List.of(userId));
+                }
+            } else {
+                RELEASE_SCRIPT.eval(session.commands(), reserved, List.of(userId));
+            }
+        } catch (Exception e) {
+            // 解放できなくても予約はTTLで消える
+            logger.warn("Failed to release signup reservation: {}", username, e);
+        }
+    }
+    
+    // 既存ユーザーからメールアドレスのインデックスを作成する（初回起動時のみ）
+    @Override
+    public void migrateEmailIndex() {
+        // クラスターのキー構成には移行前のデータが無い（SCANもノードをまたげない）
+        if (keys.isCluster()) {
+            logger.debug("Email index migration is not needed in cluster mode");
+            return;
+        }
+        
+        try (RedisSession session = redisClient.openSession()) {
+            JedisCommands jedis = session.commands();
+            if (jedis.exists(EMAIL_INDEX_MIGRATION_KEY)) {
+                logger.debug("Email index migration already done");
+                return;
+            }
+            
+            logger.info("Backfilling user email index");
+            ScanParams params = new ScanParams().match("user:*").count(SCAN_BATCH_SIZE);
+            String cursor = ScanParams.SCAN_POINTER_START;
+            int indexed = 0;
+            do {
+                ScanResult<String> page = jedis.scan(cursor, params);
+                cursor = page.getCursor();
+                indexed += indexEmails(session, page.getResult());
+            } while (!cursor.equals(ScanParams.SCAN_POINTER_START));
+            
+            jedis.set(EMAIL_INDEX_MIGRATION_KEY, String.valueOf(System.currentTimeMillis()));
+            logger.info("User email index backfilled: {} users", indexed);
+        } catch (StoreUnavailableException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Failed to backfill user email index", e);
+            throw new RuntimeException("Failed to migrate user email index", e);
+        }
+    }
+    
+    private int indexEmails(RedisSession session, List<String> scannedKeys) {
+        // user:<id> のみが対象（user:byname:*, user:<id>:roles などは除く）
+        List<String> userIds = new ArrayList<>();
+        for (String key : scannedKeys) {
+            String id = key.substring("user:".length());
+            if (!id.contains(":")) {
+                userIds.add(id);
+            }
+        }
+        if (userIds.isEmpty()) {
+            return 0;
+        }
+        
+        try (AbstractPipeline pipeline = session.pipelined()) {
+            List<Response<String>> emails = new ArrayList<>(userIds.size());
+            for (String id : userIds) {
+                emails.add(pipeline.hget(keys.user(id), "email"));
+            }
+            pipeline.sync();
+            
+            int indexed = 0;
+            for (int i = 0; i < userIds.size(); i++) {
+                String email = emails.get(i).get();
+                if (email != null) {
+                    // 重複していた場合は先に見つかったユーザーを残す
+                    pipeline.setnx(keys.userByEmail(email), userIds.get(i));
+                    indexed++;
+                }
+            }
+            pipeline.sync();
+            return indexed;
+        }
+    }
+}
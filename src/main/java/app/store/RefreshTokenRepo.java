@@ -0,0 +1,10 @@
+package app.store;
+
+// リフレッシュトークン（JTI）の有効・失効リストの保存先（Redis: RedisRefreshTokenRepo、メモリ: InMemoryRefreshTokenRepo）
+public interface RefreshTokenRepo {
+    // 有効なトークンとして ttlSec 秒間登録する
+    void activate(String jti, String userId, int ttlSec);
+    
+    // 有効なトークンを失効リストへ移す（有効だった場合は持ち主、それ以外は null を返す）
+    String revoke(String jti, int ttlSec);
+}
@@ -0,0 +1,97 @@
+package app.store;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// 保存先の実装一式（STORAGE_BACKEND=redis | memory）
+// memory は単一ノードでの開発・負荷試験用で、プロセスを止めるとデータは消える
+public final class Storage {
+    private static final Logger logger = LoggerFactory.getLogger(Storage.class);
+    
+    // メモリ版で期限切れの予約・トークンを掃除する間隔
+    private static final long PURGE_INTERVAL_SEC = 60;
+    
+    private final String backend;
+    private final PostRepo postRepo;
+    private final UserRepo userRepo;
+    private final RefreshTokenRepo refreshTokenRepo;
+    private final TimelineChannel timelineChannel;
+    private final RedisClient redisClient;
+    private final ScheduledExecutorService sweeper;
+    
+    private Storage(String backend, PostRepo postRepo, UserRepo userRepo, RefreshTokenRepo refreshTokenRepo,
+                    TimelineChannel timelineChannel, RedisClient redisClient, ScheduledExecutorService sweeper) {
+        this.backend = backend;
+        this.postRepo = postRepo;
+        this.userRepo = userRepo;
+        this.refreshTokenRepo = refreshTokenRepo;
+        this.timelineChannel = timelineChannel;
+        this.redisClient = redisClient;
+        this.sweeper = sweeper;
+    }
+    
+    // タイムラインはノード内キャッシュ経由（変更はRedis pub/subで全ノードに通知）
+    public static Storage redis(RedisClient redisClient, int postCacheSize) {
+        TimelineChannel timelineChannel = new RedisTimelineChannel(redisClient);
+        return new Storage(redisClient.isCluster() ? "redis-cluster" : "redis",
+            new CachedPostRepo(redisClient, timelineChannel, postCacheSize),
+            new RedisUserRepo(redisClient),
+            new RedisRefreshTokenRepo(redisClient),
+            timelineChannel, redisClient, null);
+    }
+    
+    public static Storage memory() {
+        TimelineChannel timelineChannel = new LocalTimelineChannel();
+        InMemoryUserRepo userRepo = new InMemoryUserRepo();
+        InMemoryRefreshTokenRepo refreshTokenRepo = new InMemoryRefreshTokenRepo();
+        
+        ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "storage-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(() -> {
+            int purged = userRepo.purgeExpired() + refreshTokenRepo.purgeExpired();
+            if (purged > 0) {
+                logger.debug("Purged {} expired entries from memory storage", purged);
+            }
+        }, PURGE_INTERVAL_SEC, PURGE_INTERVAL_SEC, TimeUnit.SECONDS);
+        
+        return new Storage("memory", new InMemoryPostRepo(timelineChannel), userRepo, refreshTokenRepo,
+            timelineChannel, null, sweeper);
+    }
+    
+    public String getBackend() {
+        return backend;
+    }
+    
+    public PostRepo getPostRepo() {
+        return postRepo;
+    }
+    
+    public UserRepo getUserRepo() {
+        return userRepo;
+    }
+    
+    public RefreshTokenRepo getRefreshTokenRepo() {
+        return refreshTokenRepo;
+    }
+    
+    public TimelineChannel getTimelineChannel() {
+        return timelineChannel;
+    }
+    
+    public void close() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+        }
+        timelineChannel.close();
+        if (redisClient != null) {
+            redisClient.close();
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package app.store;
+
+import redis.clients.jedis.exceptions.JedisClusterOperationException;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+
+// ストレージが一時的に使えない（接続プールが空かない・接続できない・応答がタイムアウトした・クラスターのノードに届かない）場合
+// ハンドラーは500ではなく 503 + Retry-After を返して負荷を逃がす
+public class StoreUnavailableException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+    
+    public StoreUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+    
+    // リポジトリが RuntimeException で包んだ場合も含め、原因をたどって判定する
+    public static boolean isCause(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            // JedisClusterOperationException: クラスターの再試行回数・時間を使い切った
+            if (cause instanceof StoreUnavailableException || cause instanceof JedisConnectionException
+                || cause instanceof JedisClusterOperationException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,60 @@
+package app.store;
+
+import app.metrics.Histogram;
+import app.metrics.RequestTiming;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import redis.clients.jedis.CommandArguments;
+import redis.clients.jedis.Connection;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.JedisClientConfig;
+import redis.clients.jedis.exceptions.JedisException;
+import redis.clients.jedis.providers.ClusterConnectionProvider;
+
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+// クラスター版の TimedJedisPool（コマンドごとにノードのプールから接続を借りる）
+// 借り出しの待ち時間を記録してコマンド数を数え、maxWait を超えた場合は StoreUnavailableException にする
+// 接続の返却はフックできないため、redis フェーズの計測は単一ノードのみ
+final class TimedClusterConnectionProvider extends ClusterConnectionProvider {
+    private final Histogram borrowWaits;
+    private final LongAdder borrowTimeouts;
+    
+    TimedClusterConnectionProvider(Set<HostAndPort> nodes, JedisClientConfig clientConfig,
+                                   GenericObjectPoolConfig<Connection> poolConfig, Histogram borrowWaits, LongAdder borrowTimeouts) {
+        super(nodes, clientConfig, poolConfig);
+        this.borrowWaits = borrowWaits;
+        this.borrowTimeouts = borrowTimeouts;
+    }
+    
+    @Override
+    public Connection getConnection(CommandArguments args) {
+        return borrow(() -> super.getConnection(args));
+    }
+    
+    // MOVED / ASK でリダイレクトされた場合とパイプライン
+    @Override
+    public Connection getConnection(HostAndPort node) {
+        return borrow(() -> super.getConnection(node));
+    }
+    
+    private Connection borrow(Supplier<Connection> borrower) {
+        long start = System.nanoTime();
+        try {
+            Connection connection = borrower.get();
+            borrowWaits.record(System.nanoTime() - start);
+            RequestTiming.countRedisCommand();
+            return connection;
+        } catch (JedisException e) {
+            if (e.getCause() instanceof NoSuchElementException) {
+                borrowWaits.record(System.nanoTime() - start);
+                borrowTimeouts.increment();
+                throw new StoreUnavailableException("Redis connection pool exhausted", e);
+            }
+            // 接続できない場合はそのまま投げて、クラスター側でスロットの再取得・再試行をさせる
+            throw e;
+        }
+    }
+}
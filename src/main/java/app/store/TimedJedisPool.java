@@ -0,0 +1,105 @@
+package app.store;
+
+import app.metrics.Histogram;
+import app.metrics.RequestTiming;
+import org.apache.commons.pool2.PooledObject;
+import org.apache.commons.pool2.impl.DefaultPooledObject;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import redis.clients.jedis.CommandArguments;
+import redis.clients.jedis.Connection;
+import redis.clients.jedis.DefaultJedisSocketFactory;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisClientConfig;
+import redis.clients.jedis.JedisFactory;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisSocketFactory;
+import redis.clients.jedis.exceptions.JedisException;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.LongAdder;
+
+// 接続の借り出しにかかった時間（プールが空いていない場合の待ち時間を含む）を記録する
+// 借り出しに失敗した場合（maxWait を超えた・新しい接続を作れない）は StoreUnavailableException にする
+// リクエスト処理中は、接続を借りてから返すまでを redis フェーズとし、送ったコマンド数を数える
+final class TimedJedisPool extends JedisPool {
+    private final Histogram borrowWaits;
+    private final LongAdder borrowTimeouts;
+    
+    TimedJedisPool(GenericObjectPoolConfig<Jedis> poolConfig, String host, int port, JedisClientConfig clientConfig,
+                   Histogram borrowWaits, LongAdder borrowTimeouts) {
+        super(poolConfig, new CountingJedisFactory(new HostAndPort(host, port), clientConfig));
+        this.borrowWaits = borrowWaits;
+        this.borrowTimeouts = borrowTimeouts;
+    }
+    
+    @Override
+    public Jedis getResource() {
+        RequestTiming.enter(RequestTiming.Phase.REDIS);
+        long start = System.nanoTime();
+        try {
+            Jedis jedis = super.getResource();
+            borrowWaits.record(System.nanoTime() - start);
+            return jedis;
+        } catch (JedisException e) {
+            RequestTiming.exit(RequestTiming.Phase.REDIS);
+            // maxWait までに空きが出なかった場合、プールは NoSuchElementException を投げる
+            if (e.getCause() instanceof NoSuchElementException) {
+                borrowWaits.record(System.nanoTime() - start);
+                borrowTimeouts.increment();
+                throw new StoreUnavailableException("Redis connection pool exhausted", e);
+            }
+            throw new StoreUnavailableException("Could not get a Redis connection", e);
+        } catch (RuntimeException e) {
+            RequestTiming.exit(RequestTiming.Phase.REDIS);
+            throw e;
+        }
+    }
+    
+    @Override
+    public void returnResource(Jedis resource) {
+        try {
+            super.returnResource(resource);
+        } finally {
+            RequestTiming.exit(RequestTiming.Phase.REDIS);
+        }
+    }
+    
+    @Override
+    public void returnBrokenResource(Jedis resource) {
+        try {
+            super.returnBrokenResource(resource);
+        } finally {
+            RequestTiming.exit(RequestTiming.Phase.REDIS);
+        }
+    }
+    
+    // 送信したコマンド（パイプライン・スクリプトを含む）を数える接続を作る
+    private static final class CountingJedisFactory extends JedisFactory {
+        private final JedisSocketFactory socketFactory;
+        private final JedisClientConfig clientConfig;
+        
+        CountingJedisFactory(HostAndPort hostAndPort, JedisClientConfig clientConfig) {
+            super(hostAndPort, clientConfig);
+            this.socketFactory = new DefaultJedisSocketFactory(hostAndPort, clientConfig);
+            this.clientConfig = clientConfig;
+        }
+        
+        @Override
+        public PooledObject<Jedis> makeObject() {
+            return new DefaultPooledObject<>(new Jedis(new CountingConnection(socketFactory, clientConfig)));
+        }
+    }
+    
+    private static final class CountingConnection extends Connection {
+        CountingConnection(JedisSocketFactory socketFactory, JedisClientConfig clientConfig) {
+            super(socketFactory, clientConfig);
+        }
+        
+        @Override
+        public void sendCommand(CommandArguments args) {
+            RequestTiming.countRedisCommand();
+            super.sendCommand(args);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package app.store;
+
+// タイムラインの変更通知（Redis pub/sub で全ノードに配信: RedisTimelineChannel、プロセス内のみ: LocalTimelineChannel）
+public interface TimelineChannel {
+    // 自ノードが発行したイベントの origin
+    String getNodeId();
+    
+    void addListener(Listener listener);
+    
+    // 配信に失敗しても例外は投げない（書き込み自体は成功しているため）
+    void publish(PostEvent event);
+    
+    void start();
+    
+    void close();
+    
+    interface Listener {
+        void onEvent(PostEvent event);
+        
+        // 通知が途切れていた可能性がある場合（購読の開始・再接続）
+        void onResubscribe();
+    }
+}
@@ -2,6 +2,9 @@
 class ApiService {
     constructor() {
         this.authService = window.authService;
+        // GETレスポンスのETagとボディ（URL単位、件数上限あり）
+        this.etagCache = new Map();
+        this.etagCacheLimit = 20;
     }
     
     // メインのリクエストメソッド
@@ -79,14 +82,42 @@ class ApiService {
     
     // JSONレスポンスのラッパー
     async json(input, init = {}) {
+        const isGet = (init.method || 'GET') === 'GET';
+        
+        // 前回のETagがあれば条件付きリクエストにする
+        const cached = isGet ? this.etagCache.get(input) : null;
+        if (cached) {
+            init = {
+                ...init,
+                headers: { ...init.headers, 'If-None-Match': cached.etag }
+            };
+        }
+        
         const response = await this.request(input, init);
         
+        // 304 Not Modified の場合は前回のボディを返す
+        if (response.status === 304 && cached) {
+            return cached.data;
+        }
+        
         if (!response.ok) {
             const errorText = await response.text();
             throw new Error(`HTTP ${response.status}: ${errorText}`);
         }
         
-        return await response.json();
+        const data = await response.json();
+        
+        const etag = response.headers.get('ETag');
+        if (isGet && etag) {
+            this.etagCache.delete(input);
+            this.etagCache.set(input, { etag, data });
+            if (this.etagCache.size > this.etagCacheLimit) {
+                // 最も古いエントリを削除
+                this.etagCache.delete(this.etagCache.keys().next().value);
+            }
+        }
+        
+        return data;
     }
     
     // GETリクエスト
@@ -109,18 +140,21 @@ class ApiService {
     
     // 認証が必要なAPIかどうかを判定
     isAuthRequiredApi(url, method = 'GET') {
+        // クエリ文字列（?limit=&before=）は判定に含めない
+        const path = url.split('?')[0];
+        
         // 認証APIは全て公開
-        if (url.startsWith('/api/auth/')) {
+        if (path.startsWith('/api/auth/')) {
             return false;
         }
         
         // GET /api/posts は公開
-        if (method === 'GET' && url === '/api/posts') {
+        if (method === 'GET' && path === '/api/posts') {
             return false;
         }
         
         // POST /api/posts と DELETE /api/posts/{id} は認証必要
-        if (url.startsWith('/api/posts')) {
+        if (path.startsWith('/api/posts')) {
             return true;
         }
         
@@ -0,0 +1,101 @@
+// 掲示板WebSocket（入力中表示・管理者のライブモデレーション）
+class BoardSocket {
+    constructor(path = '/ws/board') {
+        const scheme = window.location.protocol === 'https:' ? 'wss:' : 'ws:';
+        this.url = `${scheme}//${window.location.host}${path}`;
+        this.socket = null;
+        this.ready = false;
+        this.handlers = {};
+        this.pendingDeletes = new Map();
+        this.lastTypingSent = 0;
+    }
+    
+    // handlers: { onTyping(username) }
+    start(handlers = {}) {
+        this.handlers = handlers;
+        this.connect();
+    }
+    
+    connect() {
+        const token = window.authService.getAccessToken();
+        if (typeof WebSocket === 'undefined' || !token) {
+            return;
+        }
+        
+        const socket = new WebSocket(this.url);
+        this.socket = socket;
+        
+        // 最初のメッセージでアクセストークンを送って認証する
+        socket.addEventListener('open', () => {
+            socket.send(JSON.stringify({ type: 'auth', token: window.authService.getAccessToken() }));
+        });
+        
+        socket.addEventListener('message', (event) => {
+            const message = JSON.parse(event.data);
+            switch (message.type) {
+                case 'ready':
+                    this.ready = true;
+                    break;
+                case 'typing':
+                    if (this.handlers.onTyping) {
+                        this.handlers.onTyping(message.username);
+                    }
+                    break;
+                case 'delete-result':
+                    this.settleDelete(message.id, message.success);
+                    break;
+                case 'error':
+                    console.warn('Board socket error:', message.error);
+                    break;
+            }
+        });
+        
+        socket.addEventListener('close', (event) => {
+            this.ready = false;
+            for (const id of this.pendingDeletes.keys()) {
+                this.settleDelete(id, null);
+            }
+            
+            // トークン期限切れはリフレッシュしてから再接続する（それ以外の1008は再接続しない）
+            if (event.code === 1008 && event.reason === 'token_expired') {
+                window.authService.refreshOnce()
+                    .then(() => this.connect())
+                    .catch(() => console.warn('Board socket closed: re-authentication required'));
+            } else if (event.code !== 1008) {
+                setTimeout(() => this.connect(), 5000);
+            }
+        });
+    }
+    
+    // 入力中通知（2秒に1回まで）
+    sendTyping() {
+        const now = Date.now();
+        if (!this.ready || now - this.lastTypingSent < 2000) {
+            return;
+        }
+        this.lastTypingSent = now;
+        this.socket.send(JSON.stringify({ type: 'typing' }));
+    }
+    
+    // 接続していない場合は null を返す（呼び出し側でRESTにフォールバック）
+    deletePost(id) {
+        if (!this.ready) {
+            return null;
+        }
+        return new Promise((resolve) => {
+            this.pendingDeletes.set(id, resolve);
+            this.socket.send(JSON.stringify({ type: 'delete', id: id }));
+        });
+    }
+    
+    settleDelete(id, success) {
+        const resolve = this.pendingDeletes.get(id);
+        if (resolve) {
+            this.pendingDeletes.delete(id);
+            resolve(success);
+        }
+    }
+}
+
+// グローバルインスタンス
+window.boardSocket = new BoardSocket();
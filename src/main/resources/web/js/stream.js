@@ -0,0 +1,83 @@
+// 投稿のリアルタイム更新（SSE、失敗時はポーリングにフォールバック）
+class PostStream {
+    constructor(url = '/api/posts/stream') {
+        this.url = url;
+        this.source = null;
+        this.handlers = null;
+        this.failures = 0;
+        this.pollTimer = null;
+        this.fellBack = false;
+    }
+    
+    // handlers: { onCreated(post), onDeleted(id), onReset(), poll(), pollInterval }
+    start(handlers) {
+        this.handlers = handlers;
+        this.connect();
+    }
+    
+    connect() {
+        if (typeof EventSource === 'undefined') {
+            console.log('EventSource not supported, using polling');
+            this.startPolling();
+            return;
+        }
+        
+        const source = new EventSource(this.url);
+        this.source = source;
+        
+        source.addEventListener('open', () => {
+            console.log('Post stream connected');
+            this.failures = 0;
+            this.stopPolling();
+            
+            // ポーリング中の変更はイベントで受け取れていないため再取得する
+            if (this.fellBack) {
+                this.fellBack = false;
+                this.handlers.onReset();
+            }
+        });
+        
+        source.addEventListener('post-created', (event) => {
+            this.handlers.onCreated(JSON.parse(event.data));
+        });
+        
+        source.addEventListener('post-deleted', (event) => {
+            this.handlers.onDeleted(JSON.parse(event.data).id);
+        });
+        
+        // サーバー側で再送できないイベントがあった場合
+        source.addEventListener('reset', () => {
+            console.log('Post stream reset, reloading posts');
+            this.handlers.onReset();
+        });
+        
+        source.addEventListener('error', () => {
+            this.failures++;
+            
+            // EventSourceは自動で再接続する（Last-Event-IDで再開）。続けて失敗する場合のみポーリングへ
+            if (source.readyState === EventSource.CLOSED || this.failures >= 3) {
+                console.warn('Post stream unavailable, falling back to polling');
+                source.close();
+                this.startPolling();
+                setTimeout(() => this.connect(), 60000);
+            }
+        });
+    }
+    
+    startPolling() {
+        this.fellBack = true;
+        if (!this.pollTimer) {
+            this.pollTimer = setInterval(this.handlers.poll, this.handlers.pollInterval);
+        }
+    }
+    
+    stopPolling() {
+        if (this.pollTimer) {
+            clearInterval(this.pollTimer);
+            this.pollTimer = null;
+        }
+    }
+}
+
+// グローバルインスタンス
+window.postStream = new PostStream();
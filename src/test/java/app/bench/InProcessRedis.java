@@ -0,0 +1,47 @@
+package app.bench;
+
+import com.github.fppt.jedismock.RedisServer;
+import com.github.fppt.jedismock.server.ServiceOptions;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPoolConfig;
+
+import java.io.IOException;
+
+// ベンチマーク用のプロセス内Redis（jedis-mock）。空きポートで起動し、実際のRedisと同じくJedis経由で接続する
+// 絶対値は実際のRedisと異なるため、クライアント側の変更前後の比較に使う
+final class InProcessRedis implements AutoCloseable {
+    private final RedisServer server;
+    private final JedisPool pool;
+    
+    InProcessRedis() throws IOException {
+        this(false);
+    }
+    
+    // cluster: 全スロットを1ノードで受け持つクラスターとして応答する（クラスター版のクライアントの動作確認用）
+    InProcessRedis(boolean cluster) throws IOException {
+        RedisServer server = RedisServer.newRedisServer();
+        if (cluster) {
+            server.setOptions(ServiceOptions.defaultOptions().withClusterModeEnabled());
+        }
+        this.server = server.start();
+        this.pool = new JedisPool(new JedisPoolConfig(), server.getHost(), server.getBindPort(), 2000);
+    }
+    
+    JedisPool getPool() {
+        return pool;
+    }
+    
+    String getHost() {
+        return server.getHost();
+    }
+    
+    int getPort() {
+        return server.getBindPort();
+    }
+    
+    @Override
+    public void close() throws IOException {
+        pool.close();
+        server.stop();
+    }
+}
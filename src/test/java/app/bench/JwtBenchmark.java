@@ -0,0 +1,55 @@
+package app.bench;
+
+import app.security.JwtService;
+import app.store.User;
+import io.jsonwebtoken.Claims;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// アクセストークンの発行と検証（cacheSize=0 は検証結果のキャッシュ無し）
+//   mvn -P jmh test-compile exec:exec -Djmh.args="JwtBenchmark"
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtBenchmark {
+    private static final String SECRET = "benchmark-secret-key-that-is-at-least-256-bits-long";
+    
+    @Param({"0", "10000"})
+    public int cacheSize;
+    
+    private JwtService jwtService;
+    private User user;
+    private String token;
+    
+    @Setup
+    public void setup() {
+        jwtService = new JwtService(SECRET, 600, 604800, cacheSize);
+        user = new User("bench-user-id", "bench", "bench@example.com", "unused");
+        user.addRole("admin");
+        token = jwtService.issueAccess(user);
+    }
+    
+    @Benchmark
+    public String issueAccess() {
+        return jwtService.issueAccess(user);
+    }
+    
+    @Benchmark
+    public Claims verifyAccess() {
+        return jwtService.verifyAccess(token);
+    }
+}
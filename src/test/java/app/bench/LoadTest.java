@@ -0,0 +1,526 @@
+package app.bench;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// HTTP APIの負荷試験（エンドポイントごとのレイテンシ分布とスループットをJSONに出力する）
+//   mvn -P load test-compile exec:exec
+// 既定ではプロセス内Redis（jedis-mock）に接続した app.Main を子プロセスとして起動する
+//   LOAD_REDIS=localhost:6379 で実際のRedis（データを書き込むので開発用のみ）、LOAD_REDIS=memory でメモリ版の保存先（STORAGE_BACKEND=memory）、
+//   LOAD_REDIS=cluster でクラスターモードのプロセス内Redis（REDIS_CLUSTER_NODES）、LOAD_TARGET=http://host:port で起動済みのサーバーを対象にする
+// モード（LOAD_MODE）:
+//   closed - 仮想ユーザーが応答を待ってから次のリクエストを送る（同時実行数が一定）
+//   open   - エンドポイントごとに一定のレートで送る（応答の遅れでリクエストが減らないよう、予定時刻からのレイテンシを記録する）
+public class LoadTest {
+    private static final String MODE = System.getenv().getOrDefault("LOAD_MODE", "closed");
+    private static final int DURATION_SEC = Integer.parseInt(System.getenv().getOrDefault("LOAD_DURATION_SEC", "30"));
+    private static final int WARMUP_SEC = Integer.parseInt(System.getenv().getOrDefault("LOAD_WARMUP_SEC", "10"));
+    private static final String REDIS = System.getenv().getOrDefault("LOAD_REDIS", "embedded");
+    private static final String TARGET = System.getenv("LOAD_TARGET");
+    private static final int USERS = Integer.parseInt(System.getenv().getOrDefault("LOAD_USERS", "20"));
+    private static final int SEED_POSTS = Integer.parseInt(System.getenv().getOrDefault("LOAD_SEED_POSTS", "200"));
+    // closed モード: 匿名でタイムラインを取得し続ける仮想ユーザー数と、ログイン済みで書き込む仮想ユーザー数
+    private static final int POLLERS = Integer.parseInt(System.getenv().getOrDefault("LOAD_POLLERS", "50"));
+    private static final int WRITERS = Integer.parseInt(System.getenv().getOrDefault("LOAD_WRITERS", "5"));
+    // open モード: エンドポイントごとの1秒あたりのリクエスト数
+    private static final double RATE_POLL = Double.parseDouble(System.getenv().getOrDefault("LOAD_RATE_POLL", "500"));
+    private static final double RATE_SIGNIN = Double.parseDouble(System.getenv().getOrDefault("LOAD_RATE_SIGNIN", "5"));
+    private static final double RATE_REFRESH = Double.parseDouble(System.getenv().getOrDefault("LOAD_RATE_REFRESH", "20"));
+    private static final double RATE_POST = Double.parseDouble(System.getenv().getOrDefault("LOAD_RATE_POST", "20"));
+    private static final String OUTPUT = System.getenv("LOAD_OUTPUT");
+    // 前回の結果と比較し、p99 がこの割合を超えて悪化したエンドポイントがあれば終了コード1
+    private static final String BASELINE = System.getenv("LOAD_BASELINE");
+    private static final double MAX_P99_REGRESSION = Double.parseDouble(System.getenv().getOrDefault("LOAD_MAX_P99_REGRESSION", "0.2"));
+    
+    private static final String PASSWORD = "load-test-password";
+    private static final long MAX_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(1);
+    
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpClient client = HttpClient.newBuilder()
+        .version(HttpClient.Version.HTTP_1_1)
+        .connectTimeout(Duration.ofSeconds(5))
+        .build();
+    private final String baseUrl;
+    
+    private final Endpoint poll = new Endpoint("GET /api/posts");
+    private final Endpoint signin = new Endpoint("POST /api/auth/signin");
+    private final Endpoint refresh = new Endpoint("POST /api/auth/refresh");
+    private final Endpoint post = new Endpoint("POST /api/posts");
+    private final List<Endpoint> endpoints = List.of(poll, signin, refresh, post);
+    
+    private final List<Session> sessions = new ArrayList<>();
+    private volatile String latestEtag;
+    private volatile boolean running = true;
+    
+    private LoadTest(String baseUrl) {
+        this.baseUrl = baseUrl;
+    }
+    
+    public static void main(String[] args) throws Exception {
+        InProcessRedis redis = null;
+        Process server = null;
+        int exitCode;
+        try {
+            String baseUrl = TARGET;
+            if (baseUrl == null) {
+                String redisHost = null;
+                int redisPort = 0;
+                if ("memory".equals(REDIS)) {
+                    // Redisを使わない
+                } else if ("embedded".equals(REDIS) || "cluster".equals(REDIS)) {
+                    redis = new InProcessRedis("cluster".equals(REDIS));
+                    redisHost = redis.getHost();
+                    redisPort = redis.getPort();
+                } else {
+                    String[] hostPort = REDIS.split(":");
+                    redisHost = hostPort[0];
+                    redisPort = hostPort.length > 1 ? Integer.parseInt(hostPort[1]) : 6379;
+                }
+                
+                int port = freePort();
+                server = startServer(port, redisHost, redisPort, "cluster".equals(REDIS));
+                baseUrl = "http://localhost:" + port;
+            }
+            
+            LoadTest loadTest = new LoadTest(baseUrl);
+            loadTest.waitUntilReady();
+            exitCode = loadTest.run();
+        } finally {
+            if (server != null) {
+                // SIGTERM でシャットダウンフックを実行させる
+                server.destroy();
+                if (!server.waitFor(30, TimeUnit.SECONDS)) {
+                    server.destroyForcibly();
+                }
+            }
+            if (redis != null) {
+                redis.close();
+            }
+        }
+        System.exit(exitCode);
+    }
+    
+    private int run() throws Exception {
+        System.out.printf("Load test against %s - mode: %s, warmup: %ds, duration: %ds%n", baseUrl, MODE, WARMUP_SEC, DURATION_SEC);
+        prepare();
+        
+        Runnable stop;
+        if ("open".equals(MODE)) {
+            stop = startOpenLoop();
+        } else if ("closed".equals(MODE)) {
+            stop = startClosedLoop();
+        } else {
+            throw new IllegalArgumentException("LOAD_MODE must be 'closed' or 'open': " + MODE);
+        }
+        
+        Thread.sleep(TimeUnit.SECONDS.toMillis(WARMUP_SEC));
+        // ウォームアップ中の記録を捨てる
+        for (Endpoint endpoint : endpoints) {
+            endpoint.reset();
+        }
+        long start = System.nanoTime();
+        Thread.sleep(TimeUnit.SECONDS.toMillis(DURATION_SEC));
+        // 計測区間の記録を先に確定させる（停止待ちの間に完了したリクエストは含めない）
+        double elapsedSec = (System.nanoTime() - start) / 1e9;
+        List<Histogram> histograms = new ArrayList<>();
+        for (Endpoint endpoint : endpoints) {
+            histograms.add(endpoint.recorder.getIntervalHistogram());
+        }
+        List<Long> errors = new ArrayList<>();
+        for (Endpoint endpoint : endpoints) {
+            errors.add(endpoint.errors.sum());
+        }
+        stop.run();
+        
+        ObjectNode result = objectMapper.createObjectNode();
+        result.put("timestamp", LocalDateTime.now().toString());
+        result.put("target", baseUrl);
+        result.put("mode", MODE);
+        result.put("durationSec", elapsedSec);
+        ObjectNode config = result.putObject("config");
+        config.put("warmupSec", WARMUP_SEC);
+        config.put("users", USERS);
+        config.put("seedPosts", SEED_POSTS);
+        if ("open".equals(MODE)) {
+            config.put("ratePoll", RATE_POLL);
+            config.put("rateSignin", RATE_SIGNIN);
+            config.put("rateRefresh", RATE_REFRESH);
+            config.put("ratePost", RATE_POST);
+        } else {
+            config.put("pollers", POLLERS);
+            config.put("writers", WRITERS);
+        }
+        
+        ObjectNode endpointResults = result.putObject("endpoints");
+        System.out.printf("%n%-24s %9s %7s %9s %9s %9s %9s %9s %9s%n", "endpoint", "requests", "errors", "req/s",
+            "p50 ms", "p90 ms", "p99 ms", "p999 ms", "max ms");
+        for (int i = 0; i < endpoints.size(); i++) {
+            Histogram histogram = histograms.get(i);
+            if (histogram.getTotalCount() == 0) {
+                continue;
+            }
+            
+            ObjectNode node = endpointResults.putObject(endpoints.get(i).name);
+            node.put("requests", histogram.getTotalCount());
+            node.put("errors", errors.get(i));
+            node.put("throughput", histogram.getTotalCount() / elapsedSec);
+            ObjectNode latency = node.putObject("latencyMs");
+            latency.put("mean", histogram.getMean() / 1000.0);
+            latency.put("p50", millis(histogram, 50));
+            latency.put("p90", millis(histogram, 90));
+            latency.put("p99", millis(histogram, 99));
+            latency.put("p999", millis(histogram, 99.9));
+            latency.put("max", histogram.getMaxValue() / 1000.0);
+            
+            System.out.printf("%-24s %9d %7d %9.1f %9.2f %9.2f %9.2f %9.2f %9.2f%n", endpoints.get(i).name, histogram.getTotalCount(),
+                errors.get(i), histogram.getTotalCount() / elapsedSec, millis(histogram, 50), millis(histogram, 90),
+                millis(histogram, 99), millis(histogram, 99.9), histogram.getMaxValue() / 1000.0);
+        }
+        
+        Path output = Paths.get(OUTPUT != null ? OUTPUT
+            : "target/load-test/result-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".json");
+        if (output.getParent() != null) {
+            Files.createDirectories(output.getParent());
+        }
+        objectMapper.enable(SerializationFeature.INDENT_OUTPUT).writeValue(output.toFile(), result);
+        System.out.printf("%nResults written to %s%n", output);
+        
+        return BASELINE != null && regressed(result, objectMapper.readTree(new File(BASELINE))) ? 1 : 0;
+    }
+    
+    // 評価用のユーザーを作成してログインし、タイムラインに初期投稿を入れておく
+    private void prepare() throws Exception {
+        String runId = UUID.randomUUID().toString().substring(0, 8);
+        for (int i = 0; i < USERS; i++) {
+            String username = "load-" + runId + "-" + i;
+            String body = objectMapper.writeValueAsString(Map.of("username", username, "email", username + "@example.com", "password", PASSWORD));
+            HttpResponse<String> response = client.send(jsonPost("/api/auth/signup", body).build(), HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 201) {
+                throw new IllegalStateException("Signup failed: " + response.statusCode() + " " + response.body());
+            }
+            
+            Session session = new Session(username);
+            HttpResponse<String> signinResponse = client.send(signinRequest(session), HttpResponse.BodyHandlers.ofString());
+            if (!session.update(signinResponse)) {
+                throw new IllegalStateException("Signin failed: " + signinResponse.statusCode() + " " + signinResponse.body());
+            }
+            sessions.add(session);
+        }
+        
+        for (int i = 0; i < SEED_POSTS; i++) {
+            client.send(postRequest(sessions.get(i % sessions.size())), HttpResponse.BodyHandlers.discarding());
+        }
+        System.out.printf("Prepared %d users and %d posts%n", USERS, SEED_POSTS);
+    }
+    
+    private Runnable startClosedLoop() {
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < POLLERS; i++) {
+            threads.add(new Thread(() -> {
+                String etag = null;
+                while (running) {
+                    etag = execute(poll, pollRequest(etag), System.nanoTime(), etag).join();
+                }
+            }, "load-poller-" + i));
+        }
+        for (int i = 0; i < WRITERS; i++) {
+            Session session = sessions.get(i % sessions.size());
+            threads.add(new Thread(() -> {
+                while (running) {
+                    // 投稿 70%、トークン更新 20%、ログイン 10%
+                    int dice = ThreadLocalRandom.current().nextInt(10);
+                    if (dice < 7) {
+                        execute(post, postRequest(session), System.nanoTime(), null).join();
+                    } else if (dice < 9) {
+                        executeRefresh(session, System.nanoTime()).join();
+                    } else {
+                        execute(signin, signinRequest(session), System.nanoTime(), null).join();
+                    }
+                }
+            }, "load-writer-" + i));
+        }
+        threads.forEach(Thread::start);
+        
+        return () -> {
+            running = false;
+            for (Thread thread : threads) {
+                try {
+                    thread.join(TimeUnit.SECONDS.toMillis(30));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+    }
+    
+    private Runnable startOpenLoop() {
+        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(4);
+        AtomicInteger inFlight = new AtomicInteger();
+        // トークン更新は同じリフレッシュトークンを同時に使わないよう、空いているセッションだけを使う
+        ConcurrentLinkedQueue<Session> idleSessions = new ConcurrentLinkedQueue<>(sessions);
+        AtomicInteger next = new AtomicInteger();
+        
+        schedule(scheduler, RATE_POLL, inFlight, intended -> execute(poll, pollRequest(latestEtag), intended, null));
+        schedule(scheduler, RATE_SIGNIN, inFlight, intended ->
+            execute(signin, signinRequest(sessions.get(Math.floorMod(next.getAndIncrement(), sessions.size()))), intended, null));
+        schedule(scheduler, RATE_POST, inFlight, intended ->
+            execute(post, postRequest(sessions.get(Math.floorMod(next.getAndIncrement(), sessions.size()))), intended, null));
+        schedule(scheduler, RATE_REFRESH, inFlight, intended -> {
+            Session session = idleSessions.poll();
+            if (session == null) {
+                refresh.errors.increment();
+                return CompletableFuture.completedFuture(null);
+            }
+            return executeRefresh(session, intended).whenComplete((r, e) -> idleSessions.add(session));
+        });
+        
+        return () -> {
+            scheduler.shutdownNow();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+            while (inFlight.get() > 0 && System.nanoTime() < deadline) {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        };
+    }
+    
+    // 予定時刻 t0 + n * 間隔 にリクエストを送る（遅れた場合もレイテンシは予定時刻から数える）
+    private void schedule(ScheduledExecutorService scheduler, double rate, AtomicInteger inFlight, Dispatch dispatch) {
+        if (rate <= 0) {
+            return;
+        }
+        
+        long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+        long t0 = System.nanoTime();
+        AtomicLong sequence = new AtomicLong();
+        scheduler.scheduleAtFixedRate(() -> {
+            long intended = t0 + sequence.getAndIncrement() * intervalNanos;
+            inFlight.incrementAndGet();
+            dispatch.send(intended).whenComplete((r, e) -> inFlight.decrementAndGet());
+        }, 0, intervalNanos, TimeUnit.NANOSECONDS);
+    }
+    
+    // 応答を記録し、タイムラインの場合は受け取ったETagを返す
+    private CompletableFuture<String> execute(Endpoint endpoint, HttpRequest request, long intendedStart, String etag) {
+        return client.sendAsync(request, HttpResponse.BodyHandlers.ofString()).handle((response, error) -> {
+            int status = response != null ? response.statusCode() : 0;
+            endpoint.record(System.nanoTime() - intendedStart, status == 200 || status == 201 || status == 304);
+            if (response == null || status != 200 || endpoint != poll) {
+                return etag;
+            }
+            
+            String received = response.headers().firstValue("ETag").orElse(null);
+            latestEtag = received;
+            return received;
+        });
+    }
+    
+    private CompletableFuture<Void> executeRefresh(Session session, long intendedStart) {
+        return client.sendAsync(refreshRequest(session), HttpResponse.BodyHandlers.ofString()).handle((response, error) -> {
+            boolean ok = response != null && session.update(response);
+            refresh.record(System.nanoTime() - intendedStart, ok);
+            return null;
+        });
+    }
+    
+    private HttpRequest pollRequest(String etag) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUrl + "/api/posts?limit=50"))
+            .timeout(Duration.ofSeconds(30))
+            .header("Accept-Encoding", "gzip");
+        if (etag != null) {
+            builder.header("If-None-Match", etag);
+        }
+        return builder.GET().build();
+    }
+    
+    private HttpRequest signinRequest(Session session) {
+        return jsonPost("/api/auth/signin", "{\"username\": \"" + session.username + "\", \"password\": \"" + PASSWORD + "\"}").build();
+    }
+    
+    private HttpRequest refreshRequest(Session session) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + "/api/auth/refresh"))
+            .timeout(Duration.ofSeconds(30))
+            .header("Cookie", "refreshToken=" + session.refreshToken)
+            .POST(HttpRequest.BodyPublishers.noBody())
+            .build();
+    }
+    
+    private HttpRequest postRequest(Session session) {
+        String message = "load test message " + ThreadLocalRandom.current().nextInt(1_000_000);
+        return jsonPost("/api/posts", "{\"message\": \"" + message + "\"}")
+            .header("Authorization", "Bearer " + session.accessToken)
+            .build();
+    }
+    
+    private HttpRequest.Builder jsonPost(String path, String body) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+            .timeout(Duration.ofSeconds(30))
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString(body));
+    }
+    
+    private void waitUntilReady() throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+        while (true) {
+            try {
+                HttpResponse<Void> response = client.send(pollRequest(null), HttpResponse.BodyHandlers.discarding());
+                if (response.statusCode() == 200) {
+                    return;
+                }
+            } catch (IOException e) {
+                // 起動中
+            }
+            if (System.nanoTime() > deadline) {
+                throw new IllegalStateException("Server did not become ready: " + baseUrl);
+            }
+            Thread.sleep(500);
+        }
+    }
+    
+    private boolean regressed(JsonNode result, JsonNode baseline) {
+        boolean regressed = false;
+        var names = result.get("endpoints").fieldNames();
+        while (names.hasNext()) {
+            String name = names.next();
+            JsonNode before = baseline.path("endpoints").path(name).path("latencyMs").path("p99");
+            if (before.isMissingNode()) {
+                continue;
+            }
+            double after = result.get("endpoints").get(name).get("latencyMs").get("p99").asDouble();
+            if (after > before.asDouble() * (1 + MAX_P99_REGRESSION)) {
+                System.out.printf("REGRESSION %s: p99 %.2f ms -> %.2f ms%n", name, before.asDouble(), after);
+                regressed = true;
+            }
+        }
+        return regressed;
+    }
+    
+    // app.Main を同じクラスパスの子プロセスとして起動する（ログは target/load-test/server.log、redisHost が null ならメモリ版）
+    private static Process startServer(int port, String redisHost, int redisPort, boolean cluster) throws IOException {
+        Path log = Paths.get("target/load-test/server.log");
+        Files.createDirectories(log.getParent());
+        
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        ProcessBuilder builder = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), "app.Main")
+            .redirectErrorStream(true)
+            .redirectOutput(log.toFile());
+        Map<String, String> env = builder.environment();
+        env.put("SERVER_PORT", String.valueOf(port));
+        if (redisHost == null) {
+            env.put("STORAGE_BACKEND", "memory");
+        } else if (cluster) {
+            env.put("STORAGE_BACKEND", "redis");
+            env.put("REDIS_CLUSTER_NODES", redisHost + ":" + redisPort);
+        } else {
+            env.put("STORAGE_BACKEND", "redis");
+            env.put("REDIS_HOST", redisHost);
+            env.put("REDIS_PORT", String.valueOf(redisPort));
+        }
+        env.putIfAbsent("JWT_HS256_SECRET", "load-test-secret-key-that-is-at-least-256-bits-long");
+        
+        String storage = redisHost == null ? "in-memory storage" : (cluster ? "Redis cluster " : "Redis ") + redisHost + ":" + redisPort;
+        System.out.printf("Starting server on port %d (%s), log: %s%n", port, storage, log);
+        return builder.start();
+    }
+    
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+    
+    private static double millis(Histogram histogram, double percentile) {
+        return histogram.getValueAtPercentile(percentile) / 1000.0;
+    }
+    
+    private interface Dispatch {
+        CompletableFuture<?> send(long intendedStart);
+    }
+    
+    private static final class Endpoint {
+        private final String name;
+        private final Recorder recorder = new Recorder(MAX_LATENCY_MICROS, 3);
+        private final LongAdder errors = new LongAdder();
+        
+        Endpoint(String name) {
+            this.name = name;
+        }
+        
+        void record(long latencyNanos, boolean ok) {
+            recorder.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(latencyNanos), MAX_LATENCY_MICROS));
+            if (!ok) {
+                errors.increment();
+            }
+        }
+        
+        void reset() {
+            recorder.reset();
+            errors.reset();
+        }
+    }
+    
+    // ログイン済みのユーザー（トークンは signin / refresh の応答で更新する）
+    private final class Session {
+        private final String username;
+        private volatile String accessToken;
+        private volatile String refreshToken;
+        
+        Session(String username) {
+            this.username = username;
+        }
+        
+        boolean update(HttpResponse<String> response) {
+            if (response.statusCode() != 200) {
+                return false;
+            }
+            
+            try {
+                accessToken = objectMapper.readTree(response.body()).get("accessToken").asText();
+            } catch (IOException e) {
+                return false;
+            }
+            for (String cookie : response.headers().allValues("Set-Cookie")) {
+                if (cookie.startsWith("refreshToken=")) {
+                    int end = cookie.indexOf(';');
+                    refreshToken = cookie.substring("refreshToken=".length(), end >= 0 ? end : cookie.length());
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package app.bench;
+
+import app.store.InMemoryPostRepo;
+import app.store.LocalTimelineChannel;
+import app.store.Post;
+import app.store.PostRepo;
+import app.store.RedisClient;
+import app.store.RedisPostRepo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// タイムラインの件数ごとの投稿の保存・全件取得（Redisはプロセス内のスタンドイン、memory はメモリ版の保存先）
+//   mvn -P jmh test-compile exec:exec -Djmh.args="PostRepoBenchmark"
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PostRepoBenchmark {
+    @Param({"100", "1000", "10000"})
+    public int timelineSize;
+    
+    @Param({"redis", "memory"})
+    public String backend;
+    
+    private InProcessRedis redis;
+    private PostRepo postRepo;
+    private Post savedPost;
+    
+    @Setup
+    public void setup() throws IOException {
+        long now = System.currentTimeMillis();
+        // 同じIDで上書き保存するので、計測中もタイムラインの件数は変わらない
+        savedPost = new Post("bench-save", "benchmark message", now, "bench-user");
+        
+        if ("memory".equals(backend)) {
+            postRepo = new InMemoryPostRepo(new LocalTimelineChannel());
+            for (int i = 0; i < timelineSize; i++) {
+                postRepo.save(new Post("bench-" + i, "benchmark message " + i, now - i, "bench-user"));
+            }
+            return;
+        }
+        
+        redis = new InProcessRedis();
+        postRepo = new RedisPostRepo(new RedisClient(redis.getPool()));
+        
+        // 初期データはパイプラインでまとめて投入する（RedisPostRepo.save と同じキー構成）
+        try (Jedis jedis = redis.getPool().getResource()) {
+            Pipeline pipeline = jedis.pipelined();
+            for (int i = 0; i < timelineSize; i++) {
+                String id = "bench-" + i;
+                long created = now - i;
+                pipeline.hset("post:" + id, Map.of("id", id, "message", "benchmark message " + i,
+                    "created", String.valueOf(created), "userId", "bench-user"));
+                pipeline.zadd("posts_zset", created, id);
+            }
+            pipeline.sync();
+        }
+    }
+    
+    @TearDown
+    public void tearDown() throws IOException {
+        if (redis != null) {
+            redis.close();
+        }
+    }
+    
+    @Benchmark
+    public long save() {
+        return postRepo.save(savedPost);
+    }
+    
+    @Benchmark
+    public List<Post> findAll() {
+        return postRepo.findAll();
+    }
+}
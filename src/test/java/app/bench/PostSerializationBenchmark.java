@@ -0,0 +1,66 @@
+package app.bench;
+
+import app.store.Post;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// 投稿リストのJSONシリアライズ（byte[] にまとめる方式と、ストリームへ1件ずつ書く方式）
+//   mvn -P jmh test-compile exec:exec -Djmh.args="PostSerializationBenchmark -prof gc"
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PostSerializationBenchmark {
+    @Param({"10", "100", "1000"})
+    public int size;
+    
+    private ObjectMapper objectMapper;
+    private List<Post> posts;
+    
+    @Setup
+    public void setup() {
+        objectMapper = new ObjectMapper();
+        posts = new ArrayList<>(size);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < size; i++) {
+            posts.add(new Post("bench-" + i, "benchmark message with some 日本語 text " + i, now - i, "bench-user"));
+        }
+    }
+    
+    @Benchmark
+    public byte[] writeValueAsBytes() throws IOException {
+        return objectMapper.writeValueAsBytes(posts);
+    }
+    
+    // ApiPostsHandler と同じく JsonGenerator で1件ずつ書き出す
+    @Benchmark
+    public void streamToOutput() throws IOException {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(OutputStream.nullOutputStream(), JsonEncoding.UTF8)) {
+            generator.writeStartArray();
+            for (Post post : posts) {
+                generator.writeObject(post);
+            }
+            generator.writeEndArray();
+        }
+    }
+}
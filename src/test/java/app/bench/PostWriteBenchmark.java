@@ -0,0 +1,132 @@
+package app.bench;
+
+import app.store.Post;
+import app.store.PostRepo;
+import app.store.RedisClient;
+import app.store.RedisPostRepo;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPoolConfig;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+// 投稿の保存・削除のレイテンシ比較（スクリプト1往復 vs 従来のコマンド逐次実行）
+//   mvn -P bench test-compile exec:java
+// 実際のRedisに対して計測する。データは BENCH_REDIS_DB（既定15）に書き込み、終了時に削除する
+public class PostWriteBenchmark {
+    private static final String REDIS_HOST = System.getenv().getOrDefault("REDIS_HOST", "localhost");
+    private static final int REDIS_PORT = Integer.parseInt(System.getenv().getOrDefault("REDIS_PORT", "6379"));
+    private static final int REDIS_DB = Integer.parseInt(System.getenv().getOrDefault("BENCH_REDIS_DB", "15"));
+    private static final int WARMUP_OPS = Integer.parseInt(System.getenv().getOrDefault("BENCH_WARMUP", "2000"));
+    private static final int MEASURED_OPS = Integer.parseInt(System.getenv().getOrDefault("BENCH_OPS", "10000"));
+    
+    public static void main(String[] args) {
+        try (JedisPool pool = new JedisPool(new JedisPoolConfig(), REDIS_HOST, REDIS_PORT, 2000, null, REDIS_DB)) {
+            PostRepo repo = new RedisPostRepo(new RedisClient(pool));
+            
+            System.out.printf("Redis %s:%d db=%d, %d ops (warmup %d)%n", REDIS_HOST, REDIS_PORT, REDIS_DB, MEASURED_OPS, WARMUP_OPS);
+            
+            // ウォームアップ（JITとスクリプトの登録）
+            run(pool, repo, WARMUP_OPS);
+            
+            Result result = run(pool, repo, MEASURED_OPS);
+            result.print();
+            
+            try (Jedis jedis = pool.getResource()) {
+                jedis.del("posts_zset", "posts_version");
+            }
+        }
+    }
+    
+    // 両方の実装を交互に実行して、Redis側の状態の偏りを揃える
+    private static Result run(JedisPool pool, PostRepo repo, int ops) {
+        Result result = new Result(ops);
+        List<Post> posts = new ArrayList<>(ops);
+        for (int i = 0; i < ops; i++) {
+            posts.add(new Post(UUID.randomUUID().toString(), "benchmark message " + i, System.currentTimeMillis(), "bench-user"));
+        }
+        
+        for (int i = 0; i < ops; i++) {
+            Post post = posts.get(i);
+            
+            long start = System.nanoTime();
+            legacySave(pool, post);
+            result.legacySave[i] = System.nanoTime() - start;
+            
+            start = System.nanoTime();
+            legacyDelete(pool, post.getId());
+            result.legacyDelete[i] = System.nanoTime() - start;
+            
+            start = System.nanoTime();
+            repo.save(post);
+            result.scriptSave[i] = System.nanoTime() - start;
+            
+            start = System.nanoTime();
+            repo.delete(post.getId());
+            result.scriptDelete[i] = System.nanoTime() - start;
+        }
+        return result;
+    }
+    
+    // 変更前の PostRepo.save と同じコマンド列（5往復）
+    private static long legacySave(JedisPool pool, Post post) {
+        try (Jedis jedis = pool.getResource()) {
+            String postKey = "post:" + post.getId();
+            jedis.hset(postKey, "id", post.getId());
+            jedis.hset(postKey, "message", post.getMessage());
+            jedis.hset(postKey, "created", String.valueOf(post.getCreated()));
+            jedis.hset(postKey, "userId", post.getUserId());
+            jedis.zadd("posts_zset", post.getCreated(), post.getId());
+            return jedis.incr("posts_version");
+        }
+    }
+    
+    // 変更前の PostRepo.delete と同じコマンド列（4往復）
+    private static long legacyDelete(JedisPool pool, String postId) {
+        try (Jedis jedis = pool.getResource()) {
+            String postKey = "post:" + postId;
+            if (!jedis.exists(postKey)) {
+                return -1;
+            }
+            jedis.del(postKey);
+            jedis.zrem("posts_zset", postId);
+            return jedis.incr("posts_version");
+        }
+    }
+    
+    private static final class Result {
+        private final long[] legacySave;
+        private final long[] legacyDelete;
+        private final long[] scriptSave;
+        private final long[] scriptDelete;
+        
+        Result(int ops) {
+            legacySave = new long[ops];
+            legacyDelete = new long[ops];
+            scriptSave = new long[ops];
+            scriptDelete = new long[ops];
+        }
+        
+        void print() {
+            System.out.printf("%-16s %10s %10s %10s %10s%n", "operation", "mean(us)", "p50(us)", "p99(us)", "max(us)");
+            print("save (legacy)", legacySave);
+            print("save (script)", scriptSave);
+            print("delete (legacy)", legacyDelete);
+            print("delete (script)", scriptDelete);
+        }
+        
+        private static void print(String name, long[] samples) {
+            long[] sorted = samples.clone();
+            Arrays.sort(sorted);
+            double mean = Arrays.stream(sorted).average().orElse(0);
+            System.out.printf("%-16s %10.1f %10.1f %10.1f %10.1f%n", name,
+                mean / 1000.0,
+                sorted[sorted.length / 2] / 1000.0,
+                sorted[(int) (sorted.length * 0.99)] / 1000.0,
+                sorted[sorted.length - 1] / 1000.0);
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package app.store;
+
+import com.github.fppt.jedismock.RedisServer;
+import com.github.fppt.jedismock.server.ServiceOptions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPoolConfig;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// メモリ版の保存先がRedis版（jedis-mock）と同じ順序・カーソルでページングすることを確認する
+class InMemoryPostRepoTest {
+    private RedisServer server;
+    private JedisPool pool;
+    private RedisPostRepo redis;
+    private InMemoryPostRepo memory;
+    
+    @BeforeEach
+    void setUp() throws Exception {
+        server = RedisServer.newRedisServer().start();
+        pool = new JedisPool(new JedisPoolConfig(), server.getHost(), server.getBindPort(), 2000);
+        redis = new RedisPostRepo(new RedisClient(pool));
+        memory = new InMemoryPostRepo(new LocalTimelineChannel());
+    }
+    
+    @AfterEach
+    void tearDown() throws Exception {
+        pool.close();
+        server.stop();
+    }
+    
+    @Test
+    void pagesMatchRedis() {
+        // 同時刻の投稿（IDの降順になる）と、作成時刻を変えて上書きした投稿を含める
+        for (int i = 0; i < 11; i++) {
+            saveBoth(new Post("p" + i, "message " + i, 1_000L + i / 3, "u" + i % 2));
+        }
+        saveBoth(new Post("p4", "edited", 2_000L, "u0"));
+        
+        for (int limit : new int[] {1, 3, 4, 11, 50}) {
+            assertEquals(pages(redis, limit, null), pages(memory, limit, null), "limit " + limit);
+        }
+    }
+    
+    @Test
+    void overwriteMovesThePostInClusterLayout() throws Exception {
+        // クラスターのキー構成（作成時刻の区切りごとのソート済みセット）でも、上書きは区切りをまたいだ移動になる
+        RedisServer clusterServer = RedisServer.newRedisServer();
+        clusterServer.setOptions(ServiceOptions.defaultOptions().withClusterModeEnabled());
+        clusterServer.start();
+        RedisClient clusterClient = RedisClient.cluster(clusterServer.getHost() + ":" + clusterServer.getBindPort(), 8);
+        try {
+            RedisPostRepo cluster = new RedisPostRepo(clusterClient);
+            long day = 24 * 60 * 60 * 1000L;
+            for (int i = 0; i < 6; i++) {
+                Post post = new Post("p" + i, "message " + i, 1_000L + i * day, "u0");
+                cluster.save(post);
+                memory.save(post);
+            }
+            // 新しい区切りへ・古い区切りへ・同じ区切りの中での移動
+            for (Post post : List.of(new Post("p1", "newest", 1_000L + 9 * day, "u0"),
+                                     new Post("p4", "oldest", 500L, "u0"),
+                                     new Post("p2", "same day", 1_000L + 2 * day + 1, "u0"))) {
+                cluster.save(post);
+                memory.save(post);
+            }
+            
+            for (int limit : new int[] {1, 2, 50}) {
+                assertEquals(pages(memory, limit, null), pages(cluster, limit, null), "limit " + limit);
+            }
+            assertEquals("newest", cluster.findPage(1, null).getPosts().get(0).getMessage());
+            
+            // 移動後の区切りの件数が正しければ、削除後の件数も一致する
+            cluster.delete("p4");
+            memory.delete("p4");
+            assertEquals(pages(memory, 50, null), pages(cluster, 50, null));
+        } finally {
+            clusterClient.close();
+            clusterServer.stop();
+        }
+    }
+    
+    @Test
+    void cursorOfDeletedPostContinuesAfterIt() {
+        for (int i = 0; i < 8; i++) {
+            saveBoth(new Post("p" + i, "message " + i, 1_000L + i, "u0"));
+        }
+        PostPage first = memory.findPage(3, null);
+        assertEquals(redis.findPage(3, null).getNextCursor(), first.getNextCursor());
+        
+        // カーソルが指す投稿が消えても、その位置の続きから返す
+        String last = first.getPosts().get(2).getId();
+        redis.delete(last);
+        memory.delete(last);
+        assertEquals(pages(redis, 3, first.getNextCursor()), pages(memory, 3, first.getNextCursor()));
+    }
+    
+    @Test
+    void emptyTimelineAndInvalidCursor() {
+        assertEquals(pages(redis, 5, null), pages(memory, 5, null));
+        assertThrows(IllegalArgumentException.class, () -> redis.findPage(5, "not-a-cursor"));
+        assertThrows(IllegalArgumentException.class, () -> memory.findPage(5, "not-a-cursor"));
+    }
+    
+    @Test
+    void concurrentWritesPublishInVersionOrder() throws Exception {
+        // PostStreamHub は連番のイベントIDを前提に再送するため、通知はバージョン順に届く必要がある
+        List<Long> published = new ArrayList<>();
+        LocalTimelineChannel channel = new LocalTimelineChannel();
+        channel.addListener(new TimelineChannel.Listener() {
+            @Override
+            public void onEvent(PostEvent event) {
+                synchronized (published) {
+                    published.add(event.getVersion());
+                }
+            }
+            
+            @Override
+            public void onResubscribe() {
+            }
+        });
+        InMemoryPostRepo repo = new InMemoryPostRepo(channel);
+        
+        int threads = 8;
+        int writes = 500;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < writes; i++) {
+                    String id = thread + "-" + i;
+                    repo.save(new Post(id, "message", i, "u" + thread));
+                    repo.delete(id);
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        
+        assertEquals(threads * writes * 2, published.size());
+        for (int i = 0; i < published.size(); i++) {
+            assertEquals(i + 1, published.get(i), "event " + i);
+        }
+    }
+    
+    private void saveBoth(Post post) {
+        redis.save(post);
+        memory.save(post);
+    }
+    
+    // カーソルをたどって全ページを取得し、各ページのID・次のカーソル・件数を並べる
+    private static List<String> pages(PostRepo repo, int limit, String cursor) {
+        List<String> pages = new ArrayList<>();
+        do {
+            PostPage page = repo.findPage(limit, cursor);
+            List<String> ids = new ArrayList<>();
+            for (Post post : page.getPosts()) {
+                ids.add(post.getId());
+            }
+            pages.add(ids + " next=" + page.getNextCursor() + " total=" + page.getTotal());
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        return pages;
+    }
+}